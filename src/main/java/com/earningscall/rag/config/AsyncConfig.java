@@ -1,12 +1,15 @@
 package com.earningscall.rag.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-
-import java.util.concurrent.Executor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @Configuration
 @EnableAsync
@@ -21,16 +24,152 @@ public class AsyncConfig {
     @Value("${rag.async.queue-capacity:100}")
     private int queueCapacity;
 
+    @Value("${rag.embedding.batch.concurrency:4}")
+    private int embeddingConcurrency;
+
+    @Value("${rag.pdf.extraction.workers:4}")
+    private int extractionWorkers;
+
+    @Value("${rag.retrieval.hybrid.threads:8}")
+    private int retrievalThreads;
+
+    @Value("${rag.ingest.workers:2}")
+    private int ingestWorkers;
+
+    @Value("${rag.ingest.backlog:10}")
+    private int ingestBacklog;
+
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public ThreadPoolTaskExecutor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(corePoolSize);
         executor.setMaxPoolSize(maxPoolSize);
         executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
         executor.setThreadNamePrefix("RAG-Async-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Runs embedding batches; the pool size bounds how many batches are in flight at once
+     */
+    @Bean(name = "embeddingExecutor")
+    public ThreadPoolTaskExecutor embeddingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(embeddingConcurrency);
+        executor.setMaxPoolSize(embeddingConcurrency);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+        executor.setThreadNamePrefix("RAG-Embed-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Strips page ranges of a single PDF in parallel
+     */
+    @Bean(name = "pdfExtractionExecutor")
+    public ThreadPoolTaskExecutor pdfExtractionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(extractionWorkers);
+        executor.setMaxPoolSize(extractionWorkers);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+        executor.setThreadNamePrefix("RAG-Pdf-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the full-text leg of hybrid searches alongside the vector leg
+     */
+    @Bean(name = "retrievalExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor retrievalExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(retrievalThreads);
+        executor.setMaxPoolSize(retrievalThreads);
+        executor.setQueueCapacity(200);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+        executor.setThreadNamePrefix("RAG-Retrieval-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * With virtual threads every question gets its own full-text leg thread;
+     * the Hikari pool is what bounds the queries actually running
+     */
+    @Bean(name = "retrievalExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualRetrievalExecutor() {
+        return virtualExecutor("RAG-Retrieval-");
+    }
+
+    /**
+     * Runs the blocking retrieval of streamed answers off the subscriber's thread
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Scheduler answerScheduler() {
+        return Schedulers.boundedElastic();
+    }
+
+    @Bean(name = "answerScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Scheduler virtualAnswerScheduler() {
+        return Schedulers.fromExecutor(virtualExecutor("RAG-Answer-"));
+    }
+
+    /**
+     * Runs whole-document ingestions; the calling thread of each pipeline does
+     * the CPU-bound extraction and chunking. Uploads beyond the backlog are
+     * rejected rather than queued without bound.
+     */
+    @Bean(name = "ingestionExecutor")
+    public ThreadPoolTaskExecutor ingestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ingestWorkers);
+        executor.setMaxPoolSize(ingestWorkers);
+        executor.setQueueCapacity(ingestBacklog);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+        executor.setThreadNamePrefix("RAG-Ingest-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the I/O-bound embed and write stages of ingestion pipelines, two
+     * threads per running ingestion. Tasks are never queued, so a stage cannot
+     * wait behind another pipeline's stage. A stage's future completes before
+     * its thread is back in the pool, so each ingestion worker may briefly
+     * hold the two threads of its previous document while it starts the next;
+     * the pool leaves room for both.
+     */
+    @Bean(name = "ingestionIoExecutor")
+    public ThreadPoolTaskExecutor ingestionIoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(ingestWorkers * 4);
+        executor.setQueueCapacity(0);
+        executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+        executor.setThreadNamePrefix("RAG-Ingest-IO-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    private static SimpleAsyncTaskExecutor virtualExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
 }
@@ -0,0 +1,63 @@
+package com.earningscall.rag.config;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The WebClient side of {@link ConcurrencyLimitingInterceptor}, drawing on
+ * the same permits. A streamed response is generated while its body is read,
+ * so the permit is held until the body completes, fails or is cancelled, not
+ * just until the response head arrives. Waiting for a permit blocks, so it
+ * happens on the bounded elastic scheduler rather than an event loop.
+ */
+class ConcurrencyLimitingExchangeFilter implements ExchangeFilterFunction {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    ConcurrencyLimitingExchangeFilter(Semaphore permits, long acquireTimeoutNanos) {
+        this.permits = permits;
+        this.acquireTimeoutNanos = acquireTimeoutNanos;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.fromCallable(() -> acquire(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(permit -> next.exchange(request)
+                        .map(response -> response.mutate()
+                                .body(body -> body.doFinally(signal -> permit.release()))
+                                .build())
+                        .doOnError(e -> permit.release())
+                        .doOnCancel(permit::release));
+    }
+
+    private Permit acquire(ClientRequest request) throws IOException, InterruptedException {
+        if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            throw new IOException("Timed out waiting for an outbound request slot for " + request.url());
+        }
+        return new Permit();
+    }
+
+    /**
+     * Released at most once, whichever of body completion, error or cancellation comes first
+     */
+    private class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
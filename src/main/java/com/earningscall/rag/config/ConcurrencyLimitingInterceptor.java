@@ -0,0 +1,56 @@
+package com.earningscall.rag.config;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of outbound calls in flight. Callers beyond the cap wait
+ * for a permit, which parks a virtual thread without pinning its carrier,
+ * instead of piling more concurrent requests onto the remote API.
+ */
+public class ConcurrencyLimitingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    public ConcurrencyLimitingInterceptor(int maxConcurrentRequests, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    /**
+     * A WebClient filter sharing this interceptor's permits, for streamed calls
+     */
+    public ExchangeFilterFunction exchangeFilter() {
+        return new ConcurrencyLimitingExchangeFilter(permits, acquireTimeoutNanos);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IOException("Timed out waiting for an outbound request slot for " + request.getURI());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an outbound request slot");
+        }
+        // Non-streamed OpenAI responses start only once generation is done, so holding
+        // the permit until the response head still bounds the calls being served
+        try {
+            return execution.execute(request, body);
+        } finally {
+            permits.release();
+        }
+    }
+}
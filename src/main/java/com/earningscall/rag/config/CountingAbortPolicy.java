@@ -0,0 +1,24 @@
+package com.earningscall.rag.config;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Abort policy that remembers how many tasks it has rejected
+ */
+public class CountingAbortPolicy implements RejectedExecutionHandler {
+
+    private final ThreadPoolExecutor.AbortPolicy delegate = new ThreadPoolExecutor.AbortPolicy();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        rejected.incrementAndGet();
+        delegate.rejectedExecution(task, executor);
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
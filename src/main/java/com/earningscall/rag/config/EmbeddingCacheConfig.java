@@ -0,0 +1,33 @@
+package com.earningscall.rag.config;
+
+import com.earningscall.rag.service.CachingEmbeddingModel;
+import com.earningscall.rag.service.EmbeddingCache;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "rag.embedding.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class EmbeddingCacheConfig {
+
+    /**
+     * Wraps every EmbeddingModel bean with the embedding cache so that both
+     * EmbeddingService and the vector store's add path go through it.
+     * The cache is resolved lazily since post-processors are created early.
+     */
+    @Bean
+    public static BeanPostProcessor cachingEmbeddingModelPostProcessor(ObjectProvider<EmbeddingCache> embeddingCache) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof EmbeddingModel model && !(bean instanceof CachingEmbeddingModel)) {
+                    return new CachingEmbeddingModel(model, embeddingCache::getObject);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.earningscall.rag.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * One shared JDK HttpClient behind the RestClient and WebClient builders that
+ * the OpenAI models are built from. It multiplexes requests over HTTP/2 where
+ * the server supports it and never blocks a virtual thread on a monitor,
+ * unlike the HttpURLConnection default. Blocking and streamed calls share
+ * one cap, {@link ConcurrencyLimitingInterceptor}, so that thousands of
+ * in-flight questions queue here rather than at the OpenAI rate limiter.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${rag.openai.http.connect-timeout:PT10S}")
+    private Duration connectTimeout;
+
+    @Value("${rag.openai.http.read-timeout:PT120S}")
+    private Duration readTimeout;
+
+    @Value("${rag.openai.http.max-concurrent-requests:64}")
+    private int maxConcurrentRequests;
+
+    @Value("${rag.openai.http.acquire-timeout:PT60S}")
+    private Duration acquireTimeout;
+
+    @Bean
+    public HttpClient outboundHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    @Bean
+    public ConcurrencyLimitingInterceptor outboundRequestLimiter() {
+        return new ConcurrencyLimitingInterceptor(maxConcurrentRequests, acquireTimeout);
+    }
+
+    @Bean
+    public RestClientCustomizer outboundRestClientCustomizer(HttpClient outboundHttpClient,
+                                                             ConcurrencyLimitingInterceptor outboundRequestLimiter) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(outboundHttpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return builder -> builder.requestFactory(requestFactory).requestInterceptor(outboundRequestLimiter);
+    }
+
+    /**
+     * Streamed answers; these hold their connection, and a permit, for the whole generation
+     */
+    @Bean
+    public WebClientCustomizer outboundWebClientCustomizer(HttpClient outboundHttpClient,
+                                                           ConcurrencyLimitingInterceptor outboundRequestLimiter) {
+        return builder -> builder.clientConnector(new JdkClientHttpConnector(outboundHttpClient))
+                .filter(outboundRequestLimiter.exchangeFilter());
+    }
+}
@@ -5,6 +5,8 @@ import com.earningscall.rag.model.dto.UploadResponse;
 import com.earningscall.rag.service.PdfProcessingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -27,23 +29,32 @@ public class DocumentController {
     @PostMapping("/upload")
     public ResponseEntity<UploadResponse> uploadDocument(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(value = "companyName", required = false) String companyName) {
+            @RequestParam(value = "companyName", required = false) String companyName,
+            @RequestParam(value = "fiscalYear", required = false) Integer fiscalYear,
+            @RequestParam(value = "fiscalQuarter", required = false) Integer fiscalQuarter) {
 
         try {
             log.info("Received upload request for file: {}", file.getOriginalFilename());
 
-            Document document = pdfProcessingService.uploadDocument(file, companyName);
+            PdfProcessingService.UploadResult result = pdfProcessingService.uploadDocument(
+                    file, companyName, fiscalYear, fiscalQuarter);
+            Document document = result.document();
 
             UploadResponse response = UploadResponse.builder()
                     .documentId(document.getId())
                     .filename(document.getFilename())
                     .companyName(document.getCompanyName())
+                    .fiscalYear(document.getFiscalYear())
+                    .fiscalQuarter(document.getFiscalQuarter())
                     .status(document.getProcessingStatus().name())
                     .uploadTimestamp(document.getUploadTimestamp())
-                    .message("Document uploaded successfully. Processing has started.")
+                    .message(result.duplicate()
+                            ? "Identical document already uploaded. Returning the existing document."
+                            : "Document uploaded successfully. Processing has started.")
+                    .duplicate(result.duplicate())
                     .build();
 
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(result.duplicate() ? HttpStatus.OK : HttpStatus.CREATED).body(response);
 
         } catch (IllegalArgumentException e) {
             log.error("Invalid upload request", e);
@@ -51,6 +62,13 @@ public class DocumentController {
                     .body(UploadResponse.builder()
                             .message("Invalid request: " + e.getMessage())
                             .build());
+        } catch (TaskRejectedException e) {
+            // Back-pressure: the ingestion backlog is full
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(UploadResponse.builder()
+                            .message("Too many documents are being processed. Please retry later.")
+                            .build());
         } catch (Exception e) {
             log.error("Error uploading document", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -68,16 +86,24 @@ public class DocumentController {
         try {
             Document document = pdfProcessingService.getDocument(id);
 
-            UploadResponse response = UploadResponse.builder()
+            UploadResponse.UploadResponseBuilder response = UploadResponse.builder()
                     .documentId(document.getId())
                     .filename(document.getFilename())
                     .companyName(document.getCompanyName())
+                    .fiscalYear(document.getFiscalYear())
+                    .fiscalQuarter(document.getFiscalQuarter())
                     .status(document.getProcessingStatus().name())
                     .uploadTimestamp(document.getUploadTimestamp())
-                    .message(getStatusMessage(document))
-                    .build();
+                    .message(getStatusMessage(document));
+
+            pdfProcessingService.getProgress(id).ifPresent(progress -> response
+                    .pagesExtracted(progress.getPagesExtracted())
+                    .chunksEmbedded(progress.getChunksEmbedded())
+                    .chunksStored(progress.getChunksStored())
+                    .message(String.format("Document is currently being processed. %d of %d chunks stored so far.",
+                            progress.getChunksStored(), progress.getChunksCreated())));
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(response.build());
 
         } catch (Exception e) {
             log.error("Error fetching document status", e);
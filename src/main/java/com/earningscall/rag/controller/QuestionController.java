@@ -1,5 +1,8 @@
 package com.earningscall.rag.controller;
 
+import com.earningscall.rag.model.dto.AnswerStreamEvent;
+import com.earningscall.rag.model.dto.BatchAnswerEvent;
+import com.earningscall.rag.model.dto.BatchQuestionRequest;
 import com.earningscall.rag.model.dto.QuestionRequest;
 import com.earningscall.rag.model.dto.QuestionResponse;
 import com.earningscall.rag.service.RagService;
@@ -7,8 +10,11 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 @Slf4j
 @RestController
@@ -37,6 +43,50 @@ public class QuestionController {
         }
     }
 
+    /**
+     * Ask a question and stream the answer as Server-Sent Events:
+     * "sources" once retrieval finishes, "token" per generated fragment,
+     * then "done" with processingTimeMs and confidenceScore
+     */
+    @PostMapping(value = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> askQuestionStream(@Valid @RequestBody QuestionRequest request) {
+        log.info("Received streaming question: {}", request.getQuestion());
+
+        return ragService.streamAnswer(request)
+                .map(event -> ServerSentEvent.<Object>builder(event)
+                        .event(event.getType().eventName())
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Error streaming answer", e);
+                    return Flux.just(ServerSentEvent.<Object>builder(
+                                    ErrorResponse.of("Failed to process question: " + e.getMessage()))
+                            .event("error")
+                            .build());
+                });
+    }
+
+    /**
+     * Answer a list of questions, streamed as Server-Sent Events: one
+     * "answer" (or "error") per question as it completes, carrying the
+     * question's index in the request, then "done" with the batch totals
+     */
+    @PostMapping(value = "/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> askQuestionBatch(@Valid @RequestBody BatchQuestionRequest request) {
+        log.info("Received batch of {} questions", request.getQuestions().size());
+
+        return ragService.answerBatch(request.getQuestions())
+                .map(event -> ServerSentEvent.<Object>builder(event)
+                        .event(event.getType().eventName())
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Error answering question batch", e);
+                    return Flux.just(ServerSentEvent.<Object>builder(
+                                    ErrorResponse.of("Failed to process question batch: " + e.getMessage()))
+                            .event("error")
+                            .build());
+                });
+    }
+
     /**
      * Health check endpoint
      */
@@ -0,0 +1,70 @@
+package com.earningscall.rag.controller;
+
+import com.earningscall.rag.config.CountingAbortPolicy;
+import com.earningscall.rag.service.AnswerCache;
+import com.earningscall.rag.service.EmbeddingCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final EmbeddingCache embeddingCache;
+    private final AnswerCache answerCache;
+    private final Map<String, ThreadPoolTaskExecutor> executors;
+
+    /**
+     * Embedding cache hit/miss counters since startup
+     */
+    @GetMapping("/embedding-cache")
+    public ResponseEntity<EmbeddingCache.CacheStats> embeddingCacheStats() {
+        return ResponseEntity.ok(embeddingCache.stats());
+    }
+
+    /**
+     * Semantic answer cache hit/miss/invalidation counters since startup
+     */
+    @GetMapping("/answer-cache")
+    public ResponseEntity<AnswerCache.CacheStats> answerCacheStats() {
+        return ResponseEntity.ok(answerCache.stats());
+    }
+
+    /**
+     * Active, queued and rejected task counts of each executor pool
+     */
+    @GetMapping("/executors")
+    public ResponseEntity<Map<String, ExecutorStats>> executorStats() {
+        Map<String, ExecutorStats> stats = new TreeMap<>();
+        executors.forEach((name, executor) -> stats.put(name, ExecutorStats.of(executor)));
+        return ResponseEntity.ok(stats);
+    }
+
+    public record ExecutorStats(int activeThreads, int poolSize, int maxPoolSize, int queued,
+                                int queueRemainingCapacity, long completedTasks, long rejectedTasks) {
+
+        static ExecutorStats of(ThreadPoolTaskExecutor executor) {
+            ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+            long rejected = pool.getRejectedExecutionHandler() instanceof CountingAbortPolicy counting
+                    ? counting.getRejectedCount()
+                    : 0L;
+            return new ExecutorStats(
+                    pool.getActiveCount(),
+                    pool.getPoolSize(),
+                    pool.getMaximumPoolSize(),
+                    pool.getQueue().size(),
+                    pool.getQueue().remainingCapacity(),
+                    pool.getCompletedTaskCount(),
+                    rejected);
+        }
+    }
+}
@@ -30,6 +30,12 @@ public class Document {
     @Column(name = "company_name")
     private String companyName;
 
+    @Column(name = "fiscal_year")
+    private Integer fiscalYear;
+
+    @Column(name = "fiscal_quarter")
+    private Integer fiscalQuarter;
+
     @Column(name = "upload_timestamp", nullable = false)
     private LocalDateTime uploadTimestamp;
 
@@ -40,6 +46,10 @@ public class Document {
     @Column(name = "total_chunks")
     private Integer totalChunks;
 
+    // SHA-256 of the uploaded bytes
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> metadata;
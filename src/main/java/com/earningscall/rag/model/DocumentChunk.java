@@ -43,7 +43,7 @@ public class DocumentChunk {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
-    // Note: embedding is handled by Spring AI's VectorStore, not directly in JPA
+    // Note: rows are written with their embedding by ChunkTableVectorStore, not through JPA
 
     @PrePersist
     protected void onCreate() {
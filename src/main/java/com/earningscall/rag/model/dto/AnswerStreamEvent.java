@@ -0,0 +1,62 @@
+package com.earningscall.rag.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One event of a streamed answer; only the fields relevant to its type are set
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnswerStreamEvent {
+
+    @JsonIgnore
+    private Type type;
+
+    private List<QuestionResponse.SourceCitation> sources;
+    private String token;
+    private Double confidenceScore;
+    private Long processingTimeMs;
+    private Boolean cached;
+    private QuestionResponse.StageTimings timings;
+
+    public static AnswerStreamEvent sources(List<QuestionResponse.SourceCitation> sources) {
+        return AnswerStreamEvent.builder().type(Type.SOURCES).sources(sources).build();
+    }
+
+    public static AnswerStreamEvent token(String token) {
+        return AnswerStreamEvent.builder().type(Type.TOKEN).token(token).build();
+    }
+
+    public static AnswerStreamEvent done(QuestionResponse response) {
+        return AnswerStreamEvent.builder()
+                .type(Type.DONE)
+                .confidenceScore(response.getConfidenceScore())
+                .processingTimeMs(response.getProcessingTimeMs())
+                .cached(response.getCached())
+                .timings(response.getTimings())
+                .build();
+    }
+
+    public enum Type {
+        SOURCES,
+        TOKEN,
+        DONE;
+
+        /**
+         * SSE event name
+         */
+        public String eventName() {
+            return name().toLowerCase();
+        }
+    }
+}
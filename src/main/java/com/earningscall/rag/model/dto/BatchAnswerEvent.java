@@ -0,0 +1,63 @@
+package com.earningscall.rag.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One event of a streamed batch: an answer or failure for the question at
+ * {@code index} in the request, in completion order, then a final summary
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchAnswerEvent {
+
+    @JsonIgnore
+    private Type type;
+
+    private Integer index;
+    private String question;
+    private QuestionResponse response;
+    private String error;
+
+    // Summary fields of the done event
+    private Integer answered;
+    private Integer failed;
+    private Long processingTimeMs;
+
+    public static BatchAnswerEvent answer(int index, String question, QuestionResponse response) {
+        return BatchAnswerEvent.builder().type(Type.ANSWER).index(index).question(question).response(response).build();
+    }
+
+    public static BatchAnswerEvent error(int index, String question, String error) {
+        return BatchAnswerEvent.builder().type(Type.ERROR).index(index).question(question).error(error).build();
+    }
+
+    public static BatchAnswerEvent done(int answered, int failed, long processingTimeMs) {
+        return BatchAnswerEvent.builder()
+                .type(Type.DONE)
+                .answered(answered)
+                .failed(failed)
+                .processingTimeMs(processingTimeMs)
+                .build();
+    }
+
+    public enum Type {
+        ANSWER,
+        ERROR,
+        DONE;
+
+        /**
+         * SSE event name
+         */
+        public String eventName() {
+            return name().toLowerCase();
+        }
+    }
+}
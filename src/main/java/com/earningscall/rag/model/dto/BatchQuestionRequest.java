@@ -0,0 +1,25 @@
+package com.earningscall.rag.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchQuestionRequest {
+
+    public static final int MAX_QUESTIONS = 100;
+
+    @NotEmpty(message = "At least one question is required")
+    @Size(max = MAX_QUESTIONS, message = "At most " + MAX_QUESTIONS + " questions per batch")
+    @Valid
+    private List<QuestionRequest> questions; // Each with its own scope and options
+}
@@ -1,5 +1,7 @@
 package com.earningscall.rag.model.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,4 +22,12 @@ public class QuestionRequest {
     private UUID documentId; // Optional: search only within specific document
 
     private String companyName; // Optional: filter by company
+
+    private Integer fiscalYear; // Optional: filter by fiscal year, e.g. 2024
+
+    @Min(value = 1, message = "Fiscal quarter must be between 1 and 4")
+    @Max(value = 4, message = "Fiscal quarter must be between 1 and 4")
+    private Integer fiscalQuarter; // Optional: filter by fiscal quarter
+
+    private boolean includeTimings; // Optional: return a per-stage timing breakdown
 }
@@ -1,5 +1,6 @@
 package com.earningscall.rag.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,7 +9,7 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class QuestionResponse {
@@ -16,6 +17,10 @@ public class QuestionResponse {
     private Double confidenceScore;
     private List<SourceCitation> sources;
     private Long processingTimeMs;
+    private Boolean cached; // True when served from the semantic answer cache
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StageTimings timings; // Only when the request set includeTimings
 
     @Data
     @Builder
@@ -28,4 +33,27 @@ public class QuestionResponse {
         private String relevantText;
         private Double similarityScore;
     }
+
+    /**
+     * Where the time of one answer went, in milliseconds to the microsecond,
+     * so sub-millisecond stages do not read as 0; stages that did not run are null
+     */
+    @Data
+    @NoArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class StageTimings {
+        // Not measured for batch questions, which are embedded together
+        private Double queryEmbeddingMs;
+        private Double vectorSearchMs;
+        private Double lexicalSearchMs;
+        private Double rerankMs;
+        private Double retrievalMs;
+        private Double contextBuildMs;
+        // Streamed answers only
+        private Double llmFirstTokenMs;
+        // Null for a batch question that reused another question's generation
+        private Double llmTotalMs;
+        private Long promptTokens;
+        private Long completionTokens;
+    }
 }
@@ -16,7 +16,15 @@ public class UploadResponse {
     private UUID documentId;
     private String filename;
     private String companyName;
+    private Integer fiscalYear;
+    private Integer fiscalQuarter;
     private String status;
     private LocalDateTime uploadTimestamp;
     private String message;
+    // True when the uploaded bytes matched an existing document
+    private Boolean duplicate;
+    // Live ingestion progress, only set while the document is processing
+    private Integer pagesExtracted;
+    private Integer chunksEmbedded;
+    private Integer chunksStored;
 }
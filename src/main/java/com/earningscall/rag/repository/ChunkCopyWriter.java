@@ -0,0 +1,219 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.util.CompanyKey;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bulk writer for document_chunks rows using
+ * {@code COPY ... FROM STDIN (FORMAT binary)}. Every column, including the
+ * embedding, is sent in PostgreSQL's binary wire format, so nothing is
+ * rendered to text and parsed back on the server.
+ */
+@Slf4j
+@Repository
+public class ChunkCopyWriter {
+
+    private static final String COPY_SQL = """
+            COPY document_chunks
+                (id, document_id, chunk_text, chunk_index, page_number, company_key, fiscal_year, fiscal_quarter,
+                 metadata, embedding, created_at)
+            FROM STDIN (FORMAT binary)
+            """;
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 11;
+    private static final byte JSONB_VERSION = 1;
+    private static final LocalDateTime PG_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // Rows are encoded into this many bytes before each hand-off to the driver
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChunkCopyWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stream the rows into document_chunks in a single COPY. Joins the
+     * surrounding transaction, if any; if writing fails the COPY is cancelled
+     * and no row is inserted.
+     *
+     * @return number of rows written
+     */
+    public long write(Iterable<ChunkRow> rows) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_BYTES + 64 * 1024);
+                DataOutputStream out = new DataOutputStream(buffer);
+
+                writeHeader(out);
+                for (ChunkRow row : rows) {
+                    writeRow(out, row);
+                    if (buffer.size() >= FLUSH_BYTES) {
+                        copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                        buffer.reset();
+                    }
+                }
+                writeTrailer(out);
+                copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+
+                long written = copy.endCopy();
+                log.debug("Copied {} rows into document_chunks", written);
+                return written;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (copy.isActive()) {
+                    cancelQuietly(copy);
+                }
+            }
+        });
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0); // flags
+        out.writeInt(0); // header extension length
+    }
+
+    static void writeTrailer(DataOutputStream out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    static void writeRow(DataOutputStream out, ChunkRow row) throws IOException {
+        out.writeShort(FIELD_COUNT);
+        writeUuid(out, row.id());
+        writeUuid(out, row.documentId());
+        writeText(out, row.text());
+        writeInt(out, row.chunkIndex());
+        writeInt(out, row.pageNumber());
+        writeText(out, row.companyKey());
+        writeInt(out, row.fiscalYear());
+        writeInt(out, row.fiscalQuarter());
+        writeJsonb(out, row.metadataJson());
+        writeVector(out, row.embedding());
+        writeTimestamp(out, row.createdAt());
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    private static void writeJsonb(DataOutputStream out, String json) throws IOException {
+        if (json == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length + 1);
+        out.writeByte(JSONB_VERSION);
+        out.write(bytes);
+    }
+
+    /**
+     * pgvector's binary form: int16 dimensions, int16 unused, then float4 values
+     */
+    private static void writeVector(DataOutputStream out, float[] vector) throws IOException {
+        out.writeInt(4 + 4 * vector.length);
+        out.writeShort(vector.length);
+        out.writeShort(0);
+        for (float value : vector) {
+            out.writeFloat(value);
+        }
+    }
+
+    /**
+     * timestamp without time zone: int64 microseconds since 2000-01-01
+     */
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, value));
+    }
+
+    private static void cancelQuietly(CopyIn copy) {
+        try {
+            copy.cancelCopy();
+        } catch (SQLException e) {
+            log.warn("Failed to cancel COPY into document_chunks", e);
+        }
+    }
+
+    /**
+     * One document_chunks row
+     */
+    public record ChunkRow(UUID id,
+                           UUID documentId,
+                           String text,
+                           Integer chunkIndex,
+                           Integer pageNumber,
+                           String companyKey,
+                           Integer fiscalYear,
+                           Integer fiscalQuarter,
+                           String metadataJson,
+                           float[] embedding,
+                           LocalDateTime createdAt) {
+
+        /**
+         * Row for a chunk document; its metadata must carry documentId,
+         * chunkIndex and pageNumber, and may carry companyName, fiscalYear
+         * and fiscalQuarter
+         */
+        public static ChunkRow of(Document document, String metadataJson, float[] embedding,
+                                  LocalDateTime createdAt) {
+            Map<String, Object> metadata = document.getMetadata();
+            Object companyName = metadata.get("companyName");
+            return new ChunkRow(
+                    UUID.fromString(document.getId()),
+                    UUID.fromString(metadata.get("documentId").toString()),
+                    document.getContent(),
+                    (Integer) metadata.get("chunkIndex"),
+                    (Integer) metadata.get("pageNumber"),
+                    companyName == null ? null : CompanyKey.of(companyName.toString()),
+                    (Integer) metadata.get("fiscalYear"),
+                    (Integer) metadata.get("fiscalQuarter"),
+                    metadataJson,
+                    embedding,
+                    createdAt);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.util.CompanyKey;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates a Spring AI filter expression against chunk metadata in memory,
+ * with the same semantics {@link ChunkFilterSqlConverter} gives it in SQL:
+ * numbers compare numerically, company names by their normalized key,
+ * everything else by its string form. A missing value makes a comparison
+ * unknown, as NULL does in SQL, so NOT and NOT IN do not turn it into a match.
+ */
+final class ChunkFilterMatcher {
+
+    private ChunkFilterMatcher() {
+    }
+
+    static Predicate<Map<String, Object>> compile(Filter.Expression expression) {
+        Condition condition = condition(expression);
+        return metadata -> Boolean.TRUE.equals(condition.evaluate(metadata));
+    }
+
+    /**
+     * SQL three-valued logic: true, false or null for unknown
+     */
+    private interface Condition {
+        Boolean evaluate(Map<String, Object> metadata);
+    }
+
+    private static Condition condition(Filter.Expression expression) {
+        return switch (expression.type()) {
+            case AND -> and(condition(expression.left()), condition(expression.right()));
+            case OR -> or(condition(expression.left()), condition(expression.right()));
+            case NOT -> not(condition(expression.left()));
+            case EQ -> comparison(expression, c -> c == 0);
+            case NE -> comparison(expression, c -> c != 0);
+            case GT -> comparison(expression, c -> c > 0);
+            case GTE -> comparison(expression, c -> c >= 0);
+            case LT -> comparison(expression, c -> c < 0);
+            case LTE -> comparison(expression, c -> c <= 0);
+            case IN -> membership(expression, false);
+            case NIN -> membership(expression, true);
+            default -> throw new IllegalArgumentException("Unsupported filter operator: " + expression.type());
+        };
+    }
+
+    private static Condition condition(Filter.Operand operand) {
+        if (operand instanceof Filter.Expression expression) {
+            return condition(expression);
+        }
+        if (operand instanceof Filter.Group group) {
+            return condition(group.content());
+        }
+        throw new IllegalArgumentException("Unexpected filter operand: " + operand);
+    }
+
+    private static Condition and(Condition left, Condition right) {
+        return metadata -> {
+            Boolean a = left.evaluate(metadata);
+            if (Boolean.FALSE.equals(a)) {
+                return false;
+            }
+            Boolean b = right.evaluate(metadata);
+            if (Boolean.FALSE.equals(b)) {
+                return false;
+            }
+            return a == null || b == null ? null : true;
+        };
+    }
+
+    private static Condition or(Condition left, Condition right) {
+        return metadata -> {
+            Boolean a = left.evaluate(metadata);
+            if (Boolean.TRUE.equals(a)) {
+                return true;
+            }
+            Boolean b = right.evaluate(metadata);
+            if (Boolean.TRUE.equals(b)) {
+                return true;
+            }
+            return a == null || b == null ? null : false;
+        };
+    }
+
+    private static Condition not(Condition condition) {
+        return metadata -> {
+            Boolean value = condition.evaluate(metadata);
+            return value == null ? null : !value;
+        };
+    }
+
+    private interface Outcome {
+        boolean test(int comparison);
+    }
+
+    private static Condition comparison(Filter.Expression expression, Outcome outcome) {
+        String key = ChunkFilterSqlConverter.key(expression);
+        Object expected = normalize(key, ((Filter.Value) expression.right()).value());
+        return metadata -> {
+            Object actual = normalize(key, metadata.get(key));
+            return actual == null || expected == null ? null : outcome.test(compare(actual, expected));
+        };
+    }
+
+    private static Condition membership(Filter.Expression expression, boolean negated) {
+        String key = ChunkFilterSqlConverter.key(expression);
+        Object value = ((Filter.Value) expression.right()).value();
+        List<?> values = (value instanceof List<?> list ? list : List.of(value)).stream()
+                .map(candidate -> normalize(key, candidate))
+                .filter(Objects::nonNull)
+                .toList();
+        // The converter writes an empty list as a constant
+        if (values.isEmpty()) {
+            return metadata -> negated;
+        }
+        return metadata -> {
+            Object actual = normalize(key, metadata.get(key));
+            if (actual == null) {
+                return null;
+            }
+            boolean found = values.stream().anyMatch(candidate -> compare(actual, candidate) == 0);
+            return found != negated;
+        };
+    }
+
+    private static Object normalize(String key, Object value) {
+        if (value != null && "companyName".equals(key)) {
+            return CompanyKey.of(value.toString());
+        }
+        return value;
+    }
+
+    private static int compare(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return Double.compare(a.doubleValue(), e.doubleValue());
+        }
+        if (actual instanceof Boolean || expected instanceof Boolean) {
+            return Boolean.compare(Boolean.parseBoolean(actual.toString()), Boolean.parseBoolean(expected.toString()));
+        }
+        return actual.toString().compareTo(expected.toString());
+    }
+}
@@ -0,0 +1,170 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.util.CompanyKey;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Translates a Spring AI filter expression into a parameterized SQL predicate
+ * over the document_chunks table. Keys with a dedicated column are compared
+ * on that column; any other key is read from the metadata JSON. Company
+ * names are matched on their normalized key (see {@link CompanyKey}).
+ */
+class ChunkFilterSqlConverter {
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "documentId", "document_id",
+            "chunkIndex", "chunk_index",
+            "pageNumber", "page_number",
+            "companyName", "company_key",
+            "fiscalYear", "fiscal_year",
+            "fiscalQuarter", "fiscal_quarter");
+
+    // Keys selective enough that scanning their matches beats walking the HNSW graph
+    private static final Set<String> SCOPE_KEYS = Set.of("documentId", "companyName");
+
+    private final StringBuilder sql = new StringBuilder();
+    private final List<Object> params = new ArrayList<>();
+
+    private ChunkFilterSqlConverter() {
+    }
+
+    static Predicate convert(Filter.Expression expression) {
+        ChunkFilterSqlConverter converter = new ChunkFilterSqlConverter();
+        converter.expression(expression);
+        return new Predicate(converter.sql.toString(), converter.params);
+    }
+
+    /**
+     * True when the filter's top-level AND chain pins documentId or
+     * companyName with EQ or IN, so the B-tree indexes narrow the search to
+     * one document or company
+     */
+    static boolean isScoped(Filter.Expression expression) {
+        return switch (expression.type()) {
+            case AND -> isScoped(expression.left()) || isScoped(expression.right());
+            case EQ, IN -> SCOPE_KEYS.contains(key(expression));
+            default -> false;
+        };
+    }
+
+    private static boolean isScoped(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return isScoped(group.content());
+        }
+        return operand instanceof Filter.Expression expression && isScoped(expression);
+    }
+
+    private void operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Expression expression) {
+            expression(expression);
+        } else if (operand instanceof Filter.Group group) {
+            sql.append('(');
+            expression(group.content());
+            sql.append(')');
+        } else {
+            throw new IllegalArgumentException("Unexpected filter operand: " + operand);
+        }
+    }
+
+    private void expression(Filter.Expression expression) {
+        switch (expression.type()) {
+            case AND, OR -> {
+                sql.append('(');
+                operand(expression.left());
+                sql.append(expression.type() == Filter.ExpressionType.AND ? " AND " : " OR ");
+                operand(expression.right());
+                sql.append(')');
+            }
+            case NOT -> {
+                sql.append("NOT (");
+                operand(expression.left());
+                sql.append(')');
+            }
+            case EQ -> comparison(expression, "=");
+            case NE -> comparison(expression, "<>");
+            case GT -> comparison(expression, ">");
+            case GTE -> comparison(expression, ">=");
+            case LT -> comparison(expression, "<");
+            case LTE -> comparison(expression, "<=");
+            case IN -> membership(expression, false);
+            case NIN -> membership(expression, true);
+            default -> throw new IllegalArgumentException("Unsupported filter operator: " + expression.type());
+        }
+    }
+
+    private void comparison(Filter.Expression expression, String operator) {
+        String key = key(expression);
+        Object value = ((Filter.Value) expression.right()).value();
+        sql.append(column(key, value)).append(' ').append(operator).append(" ?");
+        params.add(bind(key, value));
+    }
+
+    private void membership(Filter.Expression expression, boolean negated) {
+        String key = key(expression);
+        Object value = ((Filter.Value) expression.right()).value();
+        List<?> values = value instanceof List<?> list ? list : List.of(value);
+        if (values.isEmpty()) {
+            sql.append(negated ? "TRUE" : "FALSE");
+            return;
+        }
+
+        sql.append(column(key, values.get(0))).append(negated ? " NOT IN (" : " IN (");
+        for (int i = 0; i < values.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            params.add(bind(key, values.get(i)));
+        }
+        sql.append(')');
+    }
+
+    static String key(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            throw new IllegalArgumentException("Filter comparison must start with a key: " + expression);
+        }
+        String name = key.key();
+        // The text parser keeps quotes around quoted identifiers
+        if (name.length() > 1 && (name.startsWith("'") || name.startsWith("\"")) && name.endsWith(name.substring(0, 1))) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static String column(String key, Object sample) {
+        String column = COLUMNS.get(key);
+        if (column != null) {
+            return column;
+        }
+        if (!key.matches("[A-Za-z0-9_]+")) {
+            throw new IllegalArgumentException("Invalid metadata key: " + key);
+        }
+        String text = "(metadata->>'" + key + "')";
+        if (sample instanceof Number) {
+            return text + "::numeric";
+        }
+        if (sample instanceof Boolean) {
+            return text + "::boolean";
+        }
+        return text;
+    }
+
+    private static Object bind(String key, Object value) {
+        if ("documentId".equals(key) && !(value instanceof UUID)) {
+            return UUID.fromString(value.toString());
+        }
+        if ("companyName".equals(key)) {
+            return CompanyKey.of(value.toString());
+        }
+        if (COLUMNS.containsKey(key) || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    record Predicate(String sql, List<Object> params) {
+    }
+}
@@ -0,0 +1,212 @@
+package com.earningscall.rag.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link VectorStore} backed by the document_chunks table, so chunk text,
+ * metadata and embedding live in one row, written once. Search orders by
+ * cosine distance against the table's HNSW index, or scans the indexed
+ * document / company scope exactly when the filter pins one.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "rag.vectorstore.backend", havingValue = "pgvector", matchIfMissing = true)
+public class ChunkTableVectorStore implements VectorStore, QueryEmbeddingSearch {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkCopyWriter copyWriter;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    // Columns returned for each hit besides its distance
+    private final String columns;
+    private final boolean includeEmbeddings;
+
+    public ChunkTableVectorStore(JdbcTemplate jdbcTemplate, ChunkCopyWriter copyWriter,
+                                 EmbeddingModel embeddingModel, ObjectMapper objectMapper,
+                                 @Value("${rag.retrieval.rerank.enabled:true}") boolean includeEmbeddings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.copyWriter = copyWriter;
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.includeEmbeddings = includeEmbeddings;
+        this.columns = includeEmbeddings
+                ? "id, chunk_text, metadata, " + EmbeddingColumn.SELECT
+                : "id, chunk_text, metadata";
+    }
+
+    /**
+     * Write the documents with a binary COPY, embedding those that carry no
+     * embedding in one multi-input call.
+     * Each document's metadata must carry documentId, chunkIndex and pageNumber.
+     */
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        List<float[]> embeddings = DocumentEmbeddings.resolve(embeddingModel, documents);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<ChunkCopyWriter.ChunkRow> rows = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            rows.add(ChunkCopyWriter.ChunkRow.of(document, toJson(document.getMetadata()), embeddings.get(i), now));
+        }
+
+        copyWriter.write(rows);
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        if (idList.isEmpty()) {
+            return Optional.of(true);
+        }
+        Object[] ids = idList.stream().map(UUID::fromString).toArray();
+        int deleted = jdbcTemplate.update("DELETE FROM document_chunks WHERE id = ANY(?)",
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("uuid", ids)));
+        return Optional.of(deleted == idList.size());
+    }
+
+    /**
+     * Nearest chunks by cosine distance. Like the pgvector store this replaces,
+     * results carry their distance in the "distance" metadata entry.
+     * <p>
+     * A filter scoped to a document or company is applied first through its
+     * B-tree index and the few thousand matching rows are ranked exactly;
+     * walking the HNSW graph and discarding other companies' neighbours would
+     * be slower and can return fewer than topK rows. Other filters are
+     * applied to the HNSW walk.
+     * <p>
+     * With reranking on, each result also carries its stored embedding, so
+     * candidates can be compared with each other without embedding them again.
+     */
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(request, embeddingModel.embed(request.getQuery()));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request, float[] queryEmbedding) {
+        String queryVector = toVectorLiteral(queryEmbedding);
+        Filter.Expression filter = request.getFilterExpression();
+
+        if (filter != null && ChunkFilterSqlConverter.isScoped(filter)) {
+            return scopedSearch(queryVector, filter, request);
+        }
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+                SELECT %s, embedding <=> ?::vector AS distance
+                FROM document_chunks
+                WHERE embedding <=> ?::vector <= ?
+                """.formatted(columns));
+        params.add(queryVector);
+        params.add(queryVector);
+        params.add(1.0 - request.getSimilarityThreshold());
+
+        if (filter != null) {
+            ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(filter);
+            sql.append("AND ").append(predicate.sql()).append('\n');
+            params.addAll(predicate.params());
+        }
+
+        sql.append("ORDER BY embedding <=> ?::vector\nLIMIT ?");
+        params.add(queryVector);
+        params.add(request.getTopK());
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> toDocument(rs), params.toArray());
+    }
+
+    /**
+     * Exact ranking over the rows the filter selects. MATERIALIZED keeps the
+     * planner from folding the filter into an HNSW scan.
+     */
+    private List<Document> scopedSearch(String queryVector, Filter.Expression filter, SearchRequest request) {
+        ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(filter);
+        String sql = """
+                WITH scoped AS MATERIALIZED (
+                    SELECT %1$s, embedding <=> ?::vector AS distance
+                    FROM document_chunks
+                    WHERE %2$s
+                )
+                SELECT *
+                FROM scoped
+                WHERE distance <= ?
+                ORDER BY distance
+                LIMIT ?""".formatted(columns, predicate.sql());
+
+        List<Object> params = new ArrayList<>();
+        params.add(queryVector);
+        params.addAll(predicate.params());
+        params.add(1.0 - request.getSimilarityThreshold());
+        params.add(request.getTopK());
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toDocument(rs), params.toArray());
+    }
+
+    private Document toDocument(ResultSet rs) throws SQLException {
+        Map<String, Object> metadata = new HashMap<>(fromJson(rs.getString("metadata")));
+        metadata.put("distance", rs.getDouble("distance"));
+        Document document = new Document(rs.getString("id"), rs.getString("chunk_text"), metadata);
+        if (includeEmbeddings) {
+            document.setEmbedding(EmbeddingColumn.read(rs));
+        }
+        return document;
+    }
+
+    static String toVectorLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk metadata is not serializable", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable chunk metadata", e);
+        }
+    }
+}
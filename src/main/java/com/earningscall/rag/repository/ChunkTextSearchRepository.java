@@ -0,0 +1,133 @@
+package com.earningscall.rag.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text search over document_chunks.chunk_tsv (GIN indexed). Catches the
+ * exact terms dense vectors tend to blur: tickers, metric names, figures and
+ * executive names.
+ */
+@Repository
+public class ChunkTextSearchRepository {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    // Letters and digits, keeping decimals such as 15.5 whole
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+(?:\\.\\p{N}+)*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean includeEmbeddings;
+
+    public ChunkTextSearchRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                     @Value("${rag.retrieval.rerank.enabled:true}") boolean includeEmbeddings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.includeEmbeddings = includeEmbeddings;
+    }
+
+    /**
+     * Chunks matching any of the query's words, ranked by ts_rank_cd so chunks
+     * matching more of them, closer together, come first, and restricted by
+     * the optional filter. Requiring every word, as web-search syntax does,
+     * would leave a question's filler words ("what", "did", "say") to rule
+     * out chunks that match its subject. Each result carries
+     * its ts_rank_cd score as "textRank" and, with reranking on, its embedding.
+     * Given the query's embedding, each result also carries its cosine
+     * "distance", as vector search results do. No similarity threshold is
+     * applied: the exact-term matches this leg exists for are the ones the
+     * embedding tends to score low.
+     */
+    public List<Document> search(String query, float[] queryEmbedding, Filter.Expression filter, int limit) {
+        String terms = toOrQuery(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        String queryVector = queryEmbedding == null ? null : ChunkTableVectorStore.toVectorLiteral(queryEmbedding);
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, chunk_text, metadata, ");
+        if (includeEmbeddings) {
+            sql.append(EmbeddingColumn.SELECT).append(", ");
+        }
+        if (queryVector != null) {
+            sql.append("embedding <=> ?::vector AS distance, ");
+            params.add(queryVector);
+        }
+        sql.append("""
+                ts_rank_cd(chunk_tsv, query) AS text_rank
+                FROM document_chunks, to_tsquery('english', ?) query
+                WHERE chunk_tsv @@ query
+                """);
+        params.add(terms);
+
+        if (filter != null) {
+            ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(filter);
+            sql.append("AND ").append(predicate.sql()).append('\n');
+            params.addAll(predicate.params());
+        }
+
+        sql.append("ORDER BY text_rank DESC\nLIMIT ?");
+        params.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Map<String, Object> metadata = new HashMap<>(fromJson(rs.getString("metadata")));
+            metadata.put("textRank", rs.getDouble("text_rank"));
+            if (queryVector != null) {
+                metadata.put("distance", rs.getDouble("distance"));
+            }
+            Document document = new Document(rs.getString("id"), rs.getString("chunk_text"), metadata);
+            if (includeEmbeddings) {
+                document.setEmbedding(EmbeddingColumn.read(rs));
+            }
+            return document;
+        }, params.toArray());
+    }
+
+    /**
+     * The query's words joined with the tsquery OR operator. Anything but
+     * letters and digits is dropped, so user text cannot form tsquery syntax;
+     * to_tsquery then stems the words and drops stop words.
+     */
+    static String toOrQuery(String query) {
+        StringJoiner terms = new StringJoiner(" | ");
+        Set<String> seen = new HashSet<>();
+        Matcher matcher = WORD.matcher(query);
+        while (matcher.find()) {
+            String word = matcher.group().toLowerCase(Locale.ROOT);
+            if (seen.add(word)) {
+                terms.add(word);
+            }
+        }
+        return terms.toString();
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable chunk metadata", e);
+        }
+    }
+}
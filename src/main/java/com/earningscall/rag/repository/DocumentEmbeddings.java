@@ -0,0 +1,42 @@
+package com.earningscall.rag.repository;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embeddings for documents about to be written. Documents that already carry
+ * one, set by the ingestion pipeline's embedding stage, keep it; the rest are
+ * embedded together in one multi-input call.
+ */
+final class DocumentEmbeddings {
+
+    private DocumentEmbeddings() {
+    }
+
+    /**
+     * @return one embedding per document, in document order
+     */
+    static List<float[]> resolve(EmbeddingModel embeddingModel, List<Document> documents) {
+        List<String> missing = new ArrayList<>();
+        for (Document document : documents) {
+            if (!hasEmbedding(document)) {
+                missing.add(document.getContent());
+            }
+        }
+        List<float[]> embedded = missing.isEmpty() ? List.of() : embeddingModel.embed(missing);
+
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        int next = 0;
+        for (Document document : documents) {
+            embeddings.add(hasEmbedding(document) ? document.getEmbedding() : embedded.get(next++));
+        }
+        return embeddings;
+    }
+
+    private static boolean hasEmbedding(Document document) {
+        return document.getEmbedding() != null && document.getEmbedding().length > 0;
+    }
+}
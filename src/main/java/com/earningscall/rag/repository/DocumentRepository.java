@@ -16,4 +16,7 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
     List<Document> findByCompanyNameContainingIgnoreCase(String companyName);
 
     List<Document> findAllByOrderByUploadTimestampDesc();
+
+    List<Document> findByContentHashAndProcessingStatusNotOrderByUploadTimestampDesc(
+            String contentHash, ProcessingStatus status);
 }
@@ -0,0 +1,643 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.util.CompanyKey;
+import com.earningscall.rag.util.HnswIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * {@link VectorStore} that answers similarity searches from an in-process
+ * {@link HnswIndex} instead of pgvector. document_chunks stays the system of
+ * record: rows are still written with a binary COPY and only enter the index
+ * once the surrounding transaction commits. The index is snapshotted to
+ * disk and, on restart, memory-mapped back and reconciled with the table,
+ * so only chunks written since the last snapshot are re-indexed.
+ * <p>
+ * With {@code rag.vectorstore.embedded.persist=false} the index is the only
+ * copy: nothing is written to document_chunks or snapshotted, and the store
+ * starts empty. Meant for load tests without Postgres.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "rag.vectorstore.backend", havingValue = "embedded")
+public class EmbeddedHnswVectorStore implements VectorStore, QueryEmbeddingSearch {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private static final String INDEX_FILE = "hnsw.idx";
+    private static final String IDS_FILE = "hnsw.ids";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChunkCopyWriter copyWriter;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final boolean quantized;
+    private final boolean persist;
+    private final boolean includeEmbeddings;
+    private final double compactionThreshold;
+    private final Path snapshotDir;
+    private final Duration snapshotInterval;
+
+    // Guards the index together with the node tables below, so ordinals stay aligned
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswIndex index;
+    // node ordinal -> chunk; null once the node is removed
+    private final List<Chunk> nodes = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // Sets, so a deletion detaches its node without scanning the group
+    private final Map<String, Set<Integer>> documentNodes = new HashMap<>();
+    private final Map<String, Set<Integer>> companyNodes = new HashMap<>();
+    // Bumped on every insert and removal, under the write lock
+    private long version;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private ScheduledExecutorService snapshotScheduler;
+
+    public EmbeddedHnswVectorStore(JdbcTemplate jdbcTemplate, ChunkCopyWriter copyWriter,
+                                   EmbeddingModel embeddingModel, ObjectMapper objectMapper,
+                                   @Value("${rag.vectorstore.embedded.m:16}") int m,
+                                   @Value("${rag.vectorstore.embedded.ef-construction:100}") int efConstruction,
+                                   @Value("${rag.vectorstore.embedded.ef-search:64}") int efSearch,
+                                   @Value("${rag.vectorstore.embedded.quantization:none}") String quantization,
+                                   @Value("${rag.vectorstore.embedded.persist:true}") boolean persist,
+                                   @Value("${rag.retrieval.rerank.enabled:true}") boolean includeEmbeddings,
+                                   @Value("${rag.vectorstore.embedded.compaction-threshold:0.2}") double compactionThreshold,
+                                   @Value("${rag.vectorstore.embedded.snapshot-dir:${java.io.tmpdir}/rag-hnsw}") Path snapshotDir,
+                                   @Value("${rag.vectorstore.embedded.snapshot-interval:PT5M}") Duration snapshotInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.copyWriter = copyWriter;
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantized = switch (quantization) {
+            case "none" -> false;
+            case "int8" -> true;
+            default -> throw new IllegalArgumentException(
+                    "rag.vectorstore.embedded.quantization must be none or int8, got: " + quantization);
+        };
+        this.persist = persist;
+        this.includeEmbeddings = includeEmbeddings;
+        this.compactionThreshold = compactionThreshold;
+        this.snapshotDir = snapshotDir;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!persist) {
+            log.info("Embedded HNSW index running in memory only, chunks are not persisted");
+            return;
+        }
+        Files.createDirectories(snapshotDir);
+        long start = System.nanoTime();
+
+        lock.writeLock().lock();
+        try {
+            if (!restoreSnapshot()) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Embedded HNSW index ready with {} chunks in {}ms",
+                ordinals.size(), (System.nanoTime() - start) / 1_000_000);
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RAG-Hnsw-Snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+        }
+        if (persist) {
+            snapshotQuietly();
+        }
+    }
+
+    /**
+     * Write the documents to document_chunks and index them once the write is
+     * committed, embedding those that carry no embedding in one multi-input call.
+     * Each document's metadata must carry documentId, chunkIndex and pageNumber.
+     */
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        List<float[]> embeddings = DocumentEmbeddings.resolve(embeddingModel, documents);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<ChunkCopyWriter.ChunkRow> rows = new ArrayList<>(documents.size());
+        List<Chunk> chunks = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            Map<String, Object> metadata = document.getMetadata();
+            if (persist) {
+                rows.add(ChunkCopyWriter.ChunkRow.of(document, toJson(metadata), embeddings.get(i), now));
+            }
+            chunks.add(new Chunk(document.getId(), metadata.get("documentId").toString(),
+                    document.getContent(), new HashMap<>(metadata)));
+        }
+
+        if (!persist) {
+            index(chunks, embeddings);
+            return;
+        }
+
+        copyWriter.write(rows);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(chunks, embeddings);
+                }
+            });
+        } else {
+            index(chunks, embeddings);
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        if (idList.isEmpty()) {
+            return Optional.of(true);
+        }
+        int deleted = 0;
+        if (persist) {
+            Object[] ids = idList.stream().map(UUID::fromString).toArray();
+            deleted = jdbcTemplate.update("DELETE FROM document_chunks WHERE id = ANY(?)",
+                    statement -> statement.setArray(1, statement.getConnection().createArrayOf("uuid", ids)));
+        }
+
+        int unindexed = 0;
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                if (unindex(id)) {
+                    unindexed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+        compactIfNeeded();
+        return Optional.of((persist ? deleted : unindexed) == idList.size());
+    }
+
+    /**
+     * Rebuild the index without its tombstones once they make up more than
+     * the compaction threshold of its nodes. The new index is built under the
+     * read lock, so searches carry on meanwhile, and is swapped in only if
+     * nothing was added or removed in between; otherwise a later delete
+     * tries again.
+     */
+    void compactIfNeeded() {
+        HnswIndex.Compaction compaction;
+        long builtFrom;
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (index == null || index.removedFraction() <= compactionThreshold) {
+                return;
+            }
+            builtFrom = version;
+            compaction = index.compact();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int removed;
+        int left;
+        lock.writeLock().lock();
+        try {
+            if (version != builtFrom) {
+                log.debug("HNSW index changed during compaction, keeping the current one");
+                return;
+            }
+            int[] compacted = compaction.ordinals();
+            List<Chunk> live = new ArrayList<>(compaction.index().size());
+            ordinals.clear();
+            documentNodes.clear();
+            companyNodes.clear();
+            for (int node = 0; node < compacted.length; node++) {
+                if (compacted[node] >= 0) {
+                    Chunk chunk = nodes.get(node);
+                    live.add(chunk);
+                    ordinals.put(chunk.id(), compacted[node]);
+                    attach(chunk, compacted[node]);
+                }
+            }
+            removed = nodes.size() - live.size();
+            left = live.size();
+            nodes.clear();
+            nodes.addAll(live);
+            index = compaction.index();
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+        log.info("Compacted HNSW index: dropped {} removed nodes, {} left, in {}ms",
+                removed, left, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Nearest chunks by cosine distance, carried in the "distance" metadata
+     * entry as with the table-backed store. A filter that pins a documentId
+     * or companyName scans that document's or company's vectors exactly; any
+     * other filter is applied while walking the graph. With reranking on,
+     * each result also carries its unit-length vector as its embedding.
+     */
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(request, embeddingModel.embed(request.getQuery()));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request, float[] query) {
+        double maxDistance = 1.0 - request.getSimilarityThreshold();
+        int topK = request.getTopK();
+
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+
+            List<HnswIndex.Result> hits;
+            Filter.Expression filterExpression = request.getFilterExpression();
+            Set<Integer> scope = filterExpression == null ? null : scopeNodes(filterExpression);
+            if (scope != null) {
+                Predicate<Map<String, Object>> matcher = ChunkFilterMatcher.compile(filterExpression);
+                int[] candidates = new int[scope.size()];
+                int count = 0;
+                for (int node : scope) {
+                    if (matcher.test(nodes.get(node).metadata())) {
+                        candidates[count++] = node;
+                    }
+                }
+                hits = index.exactSearch(query, topK, candidates, count);
+            } else if (filterExpression != null) {
+                Predicate<Map<String, Object>> matcher = ChunkFilterMatcher.compile(filterExpression);
+                IntPredicate filter = node -> nodes.get(node) != null && matcher.test(nodes.get(node).metadata());
+                hits = index.search(query, topK, efSearch, filter);
+            } else {
+                hits = index.search(query, topK, efSearch, null);
+            }
+
+            List<Document> results = new ArrayList<>(hits.size());
+            for (HnswIndex.Result hit : hits) {
+                if (hit.distance() > maxDistance) {
+                    break;
+                }
+                Chunk chunk = nodes.get(hit.node());
+                Map<String, Object> metadata = new HashMap<>(chunk.metadata());
+                metadata.put("distance", (double) hit.distance());
+                Document document = new Document(chunk.id(), chunk.content(), metadata);
+                if (includeEmbeddings) {
+                    document.setEmbedding(index.vector(hit.node()));
+                }
+                results.add(document);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index and its ordinal-to-id table to the snapshot directory
+     */
+    public void snapshot() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return;
+            }
+            Path idsTemp = snapshotDir.resolve(IDS_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(idsTemp), 1 << 16))) {
+                out.writeInt(nodes.size());
+                for (Chunk chunk : nodes) {
+                    UUID id = chunk == null ? new UUID(0L, 0L) : UUID.fromString(chunk.id());
+                    out.writeLong(id.getMostSignificantBits());
+                    out.writeLong(id.getLeastSignificantBits());
+                }
+            }
+            index.save(snapshotDir.resolve(INDEX_FILE));
+            Files.move(idsTemp, snapshotDir.resolve(IDS_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        log.info("Saved HNSW snapshot of {} chunks in {}ms", ordinals.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save HNSW snapshot to {}", snapshotDir, e);
+        }
+    }
+
+    private void index(List<Chunk> chunks, List<float[]> vectors) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                insert(chunks.get(i), vectors.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+    }
+
+    // Callers hold the write lock
+    private void insert(Chunk chunk, float[] vector) {
+        if (index == null) {
+            index = new HnswIndex(vector.length, m, efConstruction, quantized);
+        }
+        int node = index.add(vector);
+        version++;
+        nodes.add(chunk);
+        ordinals.put(chunk.id(), node);
+        attach(chunk, node);
+    }
+
+    // Callers hold the write lock
+    private void attach(Chunk chunk, int node) {
+        documentNodes.computeIfAbsent(chunk.documentId(), k -> new HashSet<>()).add(node);
+        String companyKey = chunk.companyKey();
+        if (companyKey != null) {
+            companyNodes.computeIfAbsent(companyKey, k -> new HashSet<>()).add(node);
+        }
+    }
+
+    // Callers hold the write lock
+    private boolean unindex(String id) {
+        Integer node = ordinals.remove(id);
+        if (node == null) {
+            return false;
+        }
+        Chunk chunk = nodes.set(node, null);
+        detach(documentNodes, chunk.documentId(), node);
+        if (chunk.companyKey() != null) {
+            detach(companyNodes, chunk.companyKey(), node);
+        }
+        index.remove(node);
+        version++;
+        return true;
+    }
+
+    private static void detach(Map<String, Set<Integer>> groups, String key, Integer node) {
+        Set<Integer> siblings = groups.get(key);
+        siblings.remove(node);
+        if (siblings.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * Map a snapshot onto the current table: rows the snapshot knows are
+     * attached to their nodes, newer rows are indexed from their stored
+     * embedding, and nodes whose row is gone are removed. Callers hold the
+     * write lock.
+     *
+     * @return false if there is no usable snapshot
+     */
+    private boolean restoreSnapshot() {
+        Path indexFile = snapshotDir.resolve(INDEX_FILE);
+        Path idsFile = snapshotDir.resolve(IDS_FILE);
+        if (!Files.exists(indexFile) || !Files.exists(idsFile)) {
+            return false;
+        }
+
+        List<String> snapshotIds;
+        try {
+            index = HnswIndex.load(indexFile);
+            snapshotIds = readIds(idsFile);
+        } catch (IOException e) {
+            log.warn("Unreadable HNSW snapshot in {}, rebuilding", snapshotDir, e);
+            index = null;
+            return false;
+        }
+        if (index.isQuantized() != quantized) {
+            log.info("HNSW snapshot in {} was built with quantization {}, rebuilding",
+                    snapshotDir, index.isQuantized() ? "int8" : "none");
+            index = null;
+            return false;
+        }
+        if (snapshotIds.size() != index.size()) {
+            log.warn("HNSW snapshot in {} is inconsistent ({} ids, {} nodes), rebuilding",
+                    snapshotDir, snapshotIds.size(), index.size());
+            index = null;
+            return false;
+        }
+
+        Map<String, Integer> snapshotOrdinals = new HashMap<>(snapshotIds.size() * 2);
+        for (int node = 0; node < snapshotIds.size(); node++) {
+            nodes.add(null);
+            if (!index.isRemoved(node)) {
+                snapshotOrdinals.put(snapshotIds.get(node), node);
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, document_id, chunk_text, metadata FROM document_chunks WHERE embedding IS NOT NULL",
+                rs -> {
+                    Chunk chunk = toChunk(rs);
+                    Integer node = snapshotOrdinals.remove(chunk.id());
+                    if (node == null) {
+                        missing.add(chunk.id());
+                        return;
+                    }
+                    nodes.set(node, chunk);
+                    ordinals.put(chunk.id(), node);
+                    attach(chunk, node);
+                });
+
+        // Indexed before the snapshot but deleted since
+        for (int node : snapshotOrdinals.values()) {
+            index.remove(node);
+        }
+
+        if (!missing.isEmpty()) {
+            Object[] ids = missing.stream().map(UUID::fromString).toArray();
+            jdbcTemplate.query("""
+                            SELECT id, document_id, chunk_text, metadata, embedding::real[] AS embedding
+                            FROM document_chunks WHERE id = ANY(?)
+                            """,
+                    statement -> statement.setArray(1, statement.getConnection().createArrayOf("uuid", ids)),
+                    rs -> {
+                        insert(toChunk(rs), EmbeddingColumn.read(rs));
+                    });
+        }
+
+        log.info("Restored HNSW snapshot: {} chunks mapped, {} added since, {} removed since",
+                ordinals.size() - missing.size(), missing.size(), snapshotOrdinals.size());
+        dirty.set(!missing.isEmpty() || !snapshotOrdinals.isEmpty());
+        return true;
+    }
+
+    // Callers hold the write lock
+    private void rebuild() {
+        log.info("Building HNSW index from document_chunks");
+        jdbcTemplate.query("""
+                        SELECT id, document_id, chunk_text, metadata, embedding::real[] AS embedding
+                        FROM document_chunks WHERE embedding IS NOT NULL
+                        ORDER BY created_at, chunk_index
+                        """,
+                rs -> {
+                    insert(toChunk(rs), EmbeddingColumn.read(rs));
+                });
+        dirty.set(true);
+    }
+
+    private static List<String> readIds(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            int count = in.readInt();
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(new UUID(in.readLong(), in.readLong()).toString());
+            }
+            return ids;
+        }
+    }
+
+    private Chunk toChunk(ResultSet rs) throws SQLException {
+        return new Chunk(rs.getString("id"), rs.getString("document_id"), rs.getString("chunk_text"),
+                fromJson(rs.getString("metadata")));
+    }
+
+    /**
+     * Nodes of the document or company that the filter's top-level AND chain
+     * pins with an equality (the smaller group if it pins both), else null.
+     * Callers hold the read lock.
+     */
+    private Set<Integer> scopeNodes(Filter.Expression expression) {
+        if (expression.type() == Filter.ExpressionType.AND) {
+            Set<Integer> left = scopeNodes(expression.left());
+            Set<Integer> right = scopeNodes(expression.right());
+            if (left == null || right == null) {
+                return left == null ? right : left;
+            }
+            return left.size() <= right.size() ? left : right;
+        }
+        if (expression.type() != Filter.ExpressionType.EQ) {
+            return null;
+        }
+        String key = ChunkFilterSqlConverter.key(expression);
+        Object value = ((Filter.Value) expression.right()).value();
+        if ("documentId".equals(key)) {
+            return documentNodes.getOrDefault(value.toString(), Set.of());
+        }
+        if ("companyName".equals(key)) {
+            return companyNodes.getOrDefault(CompanyKey.of(value.toString()), Set.of());
+        }
+        return null;
+    }
+
+    private Set<Integer> scopeNodes(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return scopeNodes(group.content());
+        }
+        return operand instanceof Filter.Expression expression ? scopeNodes(expression) : null;
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk metadata is not serializable", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable chunk metadata", e);
+        }
+    }
+
+    private record Chunk(String id, String documentId, String content, Map<String, Object> metadata) {
+
+        String companyKey() {
+            Object companyName = metadata.get("companyName");
+            return companyName == null ? null : CompanyKey.of(companyName.toString());
+        }
+    }
+}
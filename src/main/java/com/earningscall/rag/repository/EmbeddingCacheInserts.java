@@ -0,0 +1,18 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.model.EmbeddingCacheEntry;
+
+import java.util.List;
+
+/**
+ * Insert path for {@link EmbeddingCacheRepository} that skips the per-row
+ * SELECT a merge of assigned-id entities would issue
+ */
+public interface EmbeddingCacheInserts {
+
+    /**
+     * Insert the entries in JDBC batches, leaving any key that is already
+     * stored as it is
+     */
+    void insertIfAbsent(List<EmbeddingCacheEntry> entries);
+}
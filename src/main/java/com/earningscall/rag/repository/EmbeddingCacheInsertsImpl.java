@@ -0,0 +1,57 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.model.EmbeddingCacheEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Batched INSERT ... ON CONFLICT DO NOTHING into embedding_cache. Cache keys
+ * are content hashes, so a key another writer stored first already holds the
+ * same vector.
+ */
+class EmbeddingCacheInsertsImpl implements EmbeddingCacheInserts {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO embedding_cache (cache_key, model_name, embedding, created_at)
+            VALUES (?, ?, ?::jsonb, ?)
+            ON CONFLICT (cache_key) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    EmbeddingCacheInsertsImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void insertIfAbsent(List<EmbeddingCacheEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            ps.setString(1, entry.getCacheKey());
+            ps.setString(2, entry.getModelName());
+            ps.setString(3, toJson(entry.getEmbedding()));
+            ps.setTimestamp(4, now);
+        });
+    }
+
+    // Same JSON array the entity's jsonb mapping reads back
+    private String toJson(float[] embedding) {
+        try {
+            return objectMapper.writeValueAsString(embedding);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Embedding is not serializable", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.model.EmbeddingCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmbeddingCacheRepository extends JpaRepository<EmbeddingCacheEntry, String>, EmbeddingCacheInserts {
+}
@@ -0,0 +1,28 @@
+package com.earningscall.rag.repository;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads document_chunks.embedding back as floats. Selecting it cast to
+ * real[] lets the driver hand over an array instead of the vector's text form.
+ */
+final class EmbeddingColumn {
+
+    static final String SELECT = "embedding::real[] AS embedding";
+
+    private EmbeddingColumn() {
+    }
+
+    static float[] read(ResultSet rs) throws SQLException {
+        Array array = rs.getArray("embedding");
+        Object[] values = (Object[]) array.getArray();
+        float[] vector = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            vector[i] = ((Number) values[i]).floatValue();
+        }
+        array.free();
+        return vector;
+    }
+}
@@ -0,0 +1,19 @@
+package com.earningscall.rag.repository;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.List;
+
+/**
+ * A {@link VectorStore} that can search with a query embedding the caller
+ * already has, instead of embedding the request's query text again
+ */
+public interface QueryEmbeddingSearch {
+
+    /**
+     * {@link VectorStore#similaritySearch(SearchRequest)} with the embedding of the request's query
+     */
+    List<Document> similaritySearch(SearchRequest request, float[] queryEmbedding);
+}
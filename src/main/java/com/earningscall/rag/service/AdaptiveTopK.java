@@ -0,0 +1,46 @@
+package com.earningscall.rag.service;
+
+/**
+ * Adaptive top-k: candidates are kept down to the first sharp drop in cosine
+ * similarity, where results stop being about the question, so an easy
+ * question sends its few strong matches to the model instead of padding the
+ * prompt up to top-k. The same drop gives the confidence: how far the best
+ * match stands above the first candidate past it, or above the similarity
+ * threshold when there is no drop.
+ */
+final class AdaptiveTopK {
+
+    private AdaptiveTopK() {
+    }
+
+    /**
+     * @param similarities best first
+     * @param minKeep      kept regardless of drops
+     * @param maxDrop      largest fall between neighbouring similarities that does not end the list
+     * @param threshold    the similarity threshold the candidates were retrieved with
+     */
+    static Cut cut(double[] similarities, int minKeep, double maxDrop, double threshold) {
+        if (similarities.length == 0) {
+            return new Cut(0, 0.0);
+        }
+
+        int keep = similarities.length;
+        for (int i = Math.max(1, minKeep); i < similarities.length; i++) {
+            if (similarities[i - 1] - similarities[i] > maxDrop) {
+                keep = i;
+                break;
+            }
+        }
+
+        double floor = keep < similarities.length ? Math.max(threshold, similarities[keep]) : threshold;
+        double top = similarities[0];
+        double confidence = floor >= 1.0 ? (top >= 1.0 ? 1.0 : 0.0) : (top - floor) / (1.0 - floor);
+        return new Cut(keep, Math.min(1.0, Math.max(0.0, confidence)));
+    }
+
+    /**
+     * How many leading candidates to keep and the confidence in the best of them, from 0 to 1
+     */
+    record Cut(int keep, double confidence) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.model.dto.QuestionResponse;
+import com.earningscall.rag.util.CompanyKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Semantic answer cache: returns a previously generated answer when a new
+ * question's embedding is within the cosine threshold of a cached question
+ * asked with the same scope (document, company and fiscal period). Bounded
+ * by size (LRU) and TTL.
+ */
+@Slf4j
+@Service
+public class AnswerCache {
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries;
+    // Not a monitor: lookups scan every entry, and virtual threads queued on a monitor pin their carriers
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AnswerCache(@Value("${rag.answer-cache.enabled:true}") boolean enabled,
+                       @Value("${rag.answer-cache.similarity-threshold:0.95}") double similarityThreshold,
+                       @Value("${rag.answer-cache.max-entries:1000}") int maxEntries,
+                       @Value("${rag.answer-cache.ttl:PT6H}") Duration ttl) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Find the closest cached answer in the same scope, if it clears the threshold
+     */
+    public Optional<QuestionResponse> lookup(float[] questionEmbedding, VectorStorageService.SearchScope searchScope) {
+        Scope scope = Scope.of(searchScope);
+        float[] query = normalize(questionEmbedding);
+        long now = System.nanoTime();
+
+        Long bestId = null;
+        double bestSimilarity = similarityThreshold;
+
+        lock.lock();
+        try {
+            Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Entry> e = it.next();
+                Entry entry = e.getValue();
+                if (now - entry.createdAt() >= ttlNanos) {
+                    it.remove();
+                    continue;
+                }
+                if (!entry.scope().equals(scope)) {
+                    continue;
+                }
+                double similarity = dot(query, entry.questionVector());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestId = e.getKey();
+                }
+            }
+
+            if (bestId != null) {
+                // get() refreshes the entry's LRU position
+                Entry best = entries.get(bestId);
+                hits.incrementAndGet();
+                log.info("Answer cache hit (similarity {}) for question: {}", bestSimilarity, best.question());
+                return Optional.of(best.response());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Invalidation epoch; read it before retrieval and pass it to {@link #put}
+     * so answers built from data that changed mid-flight are not cached
+     */
+    public long epoch() {
+        return epoch.get();
+    }
+
+    public void put(String question, float[] questionEmbedding, VectorStorageService.SearchScope searchScope,
+                    QuestionResponse response, long observedEpoch) {
+        Entry entry = new Entry(question, Scope.of(searchScope), normalize(questionEmbedding),
+                response, System.nanoTime());
+        lock.lock();
+        try {
+            if (epoch.get() == observedEpoch) {
+                entries.put(nextId.incrementAndGet(), entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop every entry whose scope could have retrieved chunks from the given
+     * document: answers scoped to it, to its company, or to the whole corpus.
+     * Fiscal period filters are ignored here, which can only over-invalidate.
+     */
+    public void invalidateDocument(UUID documentId, String companyName) {
+        String companyKey = CompanyKey.of(companyName);
+        int removed;
+        lock.lock();
+        try {
+            epoch.incrementAndGet();
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.scope().covers(documentId, companyKey));
+            removed = before - entries.size();
+        } finally {
+            lock.unlock();
+        }
+        if (removed > 0) {
+            invalidations.addAndGet(removed);
+            log.info("Invalidated {} cached answers for document {}", removed, documentId);
+        }
+    }
+
+    public CacheStats stats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        return new CacheStats(hits.get(), misses.get(), invalidations.get(), size);
+    }
+
+    private static float[] normalize(float[] vector) {
+        float[] result = vector.clone();
+        double norm = 0.0;
+        for (float v : result) {
+            norm += v * v;
+        }
+        float scale = norm == 0.0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < result.length; i++) {
+            result[i] *= scale;
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1.0;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record Entry(String question, Scope scope, float[] questionVector, QuestionResponse response,
+                         long createdAt) {
+    }
+
+    private record Scope(UUID documentId, String companyKey, Integer fiscalYear, Integer fiscalQuarter) {
+
+        static Scope of(VectorStorageService.SearchScope scope) {
+            return new Scope(scope.documentId(), CompanyKey.of(scope.companyName()), scope.fiscalYear(),
+                    scope.fiscalQuarter());
+        }
+
+        boolean covers(UUID changedDocumentId, String changedCompanyKey) {
+            if (documentId != null) {
+                return documentId.equals(changedDocumentId);
+            }
+            return companyKey == null || Objects.equals(companyKey, changedCompanyKey);
+        }
+    }
+
+    public record CacheStats(long hits, long misses, long invalidations, int entries) {
+    }
+}
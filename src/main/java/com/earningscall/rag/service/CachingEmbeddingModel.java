@@ -0,0 +1,78 @@
+package com.earningscall.rag.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Decorates the configured {@link EmbeddingModel} with the {@link EmbeddingCache}.
+ * Only texts missing from the cache are sent to the delegate, in a single
+ * multi-input request. Both {@link EmbeddingService} and the vector store see
+ * this decorator, so chunks embedded once are never embedded again.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Supplier<EmbeddingCache> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, Supplier<EmbeddingCache> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        EmbeddingCache embeddingCache = cache.get();
+
+        Map<String, float[]> cached = embeddingCache.getAll(texts);
+
+        List<String> missing = new ArrayList<>(new LinkedHashSet<>(texts));
+        missing.removeAll(cached.keySet());
+
+        if (!missing.isEmpty()) {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(missing, request.getOptions()));
+            float[][] vectors = EmbeddingResults.inInputOrder(response.getResults(), missing.size());
+
+            Map<String, float[]> computed = new HashMap<>();
+            for (int i = 0; i < vectors.length; i++) {
+                computed.put(missing.get(i), vectors[i]);
+            }
+
+            embeddingCache.putAll(computed);
+            cached.putAll(computed);
+        }
+
+        log.debug("Embedding request for {} texts: {} served from cache", texts.size(),
+                texts.size() - missing.size());
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(cached.get(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        // Key on the raw content so vector-store calls share entries with EmbeddingService
+        return call(new EmbeddingRequest(List.of(document.getContent()), null))
+                .getResults().get(0).getOutput();
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
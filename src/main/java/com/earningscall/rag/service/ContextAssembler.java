@@ -0,0 +1,194 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.TokenCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Turns retrieved chunks into the LLM context. Consecutive chunks of a
+ * document are merged into one passage, without the overlap the chunker
+ * repeats at the start of the later chunk, and passages are packed best
+ * first into a token budget, so the prompt carries no repeated text and
+ * stays within the model's context window.
+ */
+@Component
+public class ContextAssembler {
+
+    static final String SEPARATOR = "\n---\n";
+
+    // Shorter matches between a chunk's end and the next chunk's start are coincidence, not overlap
+    private static final int MIN_OVERLAP = 8;
+
+    private final TokenCounter tokenCounter;
+    private final int maxTokens;
+    private final int separatorTokens;
+
+    public ContextAssembler(TokenCounter tokenCounter,
+                            @Value("${rag.context.max-tokens:3000}") int maxTokens) {
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens;
+        this.separatorTokens = tokenCounter.count(SEPARATOR);
+    }
+
+    /**
+     * Passages that do not fit the remaining budget are skipped, so a shorter,
+     * lower ranked one may still be used; the best passage is always kept.
+     * Tokens are counted per chunk, so the total is approximate at the joins.
+     *
+     * @param chunks best first
+     */
+    public AssembledContext assemble(List<VectorStorageService.RetrievedChunk> chunks) {
+        List<Passage> packed = new ArrayList<>();
+        int tokens = 0;
+        int length = 0;
+        for (Passage passage : merge(chunks)) {
+            int cost = passage.tokens + (packed.isEmpty() ? 0 : separatorTokens);
+            if (packed.isEmpty() || tokens + cost <= maxTokens) {
+                packed.add(passage);
+                tokens += cost;
+                length += passage.length + SEPARATOR.length();
+            }
+        }
+
+        StringBuilder context = new StringBuilder(length);
+        boolean[] used = new boolean[chunks.size()];
+        for (Passage passage : packed) {
+            if (!context.isEmpty()) {
+                context.append(SEPARATOR);
+            }
+            context.append(passage.header).append('\n');
+            for (Segment segment : passage.segments) {
+                String text = segment.chunk().getText();
+                if (segment.start() == 0 && segment != passage.segments.get(0)) {
+                    context.append(' ');
+                }
+                context.append(text, segment.start(), text.length());
+                used[segment.rank()] = true;
+            }
+            context.append('\n');
+        }
+
+        List<VectorStorageService.RetrievedChunk> included = new ArrayList<>(chunks.size());
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                included.add(chunks.get(i));
+            }
+        }
+        return new AssembledContext(context.toString(), included, tokens);
+    }
+
+    /**
+     * Group runs of consecutive chunkIndex values of the same document into
+     * passages, ordered by their best ranked chunk
+     */
+    private List<Passage> merge(List<VectorStorageService.RetrievedChunk> chunks) {
+        Integer[] order = new Integer[chunks.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+                .comparing((Integer i) -> Objects.toString(chunks.get(i).getDocumentId(), ""))
+                .thenComparing(i -> chunks.get(i).getChunkIndex(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Passage> passages = new ArrayList<>();
+        Passage current = null;
+        VectorStorageService.RetrievedChunk previous = null;
+        for (int rank : order) {
+            VectorStorageService.RetrievedChunk chunk = chunks.get(rank);
+            if (current != null && follows(previous, chunk)) {
+                if (!chunk.getChunkIndex().equals(previous.getChunkIndex())) {
+                    current.add(chunk, overlap(previous.getText(), chunk.getText()), rank);
+                }
+            } else {
+                current = new Passage(chunk, rank);
+                passages.add(current);
+            }
+            previous = chunk;
+        }
+
+        for (Passage passage : passages) {
+            passage.finish(tokenCounter);
+        }
+        passages.sort(Comparator.comparingInt(passage -> passage.rank));
+        return passages;
+    }
+
+    private static boolean follows(VectorStorageService.RetrievedChunk previous,
+                                   VectorStorageService.RetrievedChunk chunk) {
+        return previous.getDocumentId() != null
+                && previous.getDocumentId().equals(chunk.getDocumentId())
+                && previous.getChunkIndex() != null
+                && chunk.getChunkIndex() != null
+                && chunk.getChunkIndex() - previous.getChunkIndex() <= 1;
+    }
+
+    /**
+     * Length of the longest start of next that previous ends with
+     */
+    static int overlap(String previous, String next) {
+        for (int length = Math.min(previous.length(), next.length()); length >= MIN_OVERLAP; length--) {
+            if (previous.regionMatches(previous.length() - length, next, 0, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The context text, the chunks it includes in retrieval order and its approximate token count
+     */
+    public record AssembledContext(String text, List<VectorStorageService.RetrievedChunk> chunks, int tokens) {
+    }
+
+    /**
+     * A chunk's text from start on; rank is its position in the retrieved list
+     */
+    private record Segment(VectorStorageService.RetrievedChunk chunk, int start, int rank) {
+    }
+
+    private static class Passage {
+        private final List<Segment> segments = new ArrayList<>(2);
+        private int rank;
+        private String header;
+        private int tokens;
+        private int length;
+
+        Passage(VectorStorageService.RetrievedChunk first, int rank) {
+            segments.add(new Segment(first, 0, rank));
+            this.rank = rank;
+        }
+
+        void add(VectorStorageService.RetrievedChunk chunk, int start, int chunkRank) {
+            segments.add(new Segment(chunk, start, chunkRank));
+            rank = Math.min(rank, chunkRank);
+        }
+
+        void finish(TokenCounter tokenCounter) {
+            VectorStorageService.RetrievedChunk first = segments.get(0).chunk();
+            Integer firstPage = first.getPageNumber();
+            Integer lastPage = segments.get(segments.size() - 1).chunk().getPageNumber();
+            StringBuilder label = new StringBuilder(64).append("[Document: ").append(first.getDocumentName());
+            if (firstPage != null && lastPage != null && !firstPage.equals(lastPage)) {
+                label.append(", Pages: ").append(firstPage).append('-').append(lastPage);
+            } else {
+                label.append(", Page: ").append(firstPage);
+            }
+            header = label.append(']').toString();
+
+            // Plus the line breaks after the header and the text
+            tokens = tokenCounter.count(header) + 2;
+            length = header.length() + 2;
+            for (Segment segment : segments) {
+                String text = segment.chunk().getText();
+                tokens += tokenCounter.count(text, segment.start(), text.length());
+                length += text.length() - segment.start() + 1;
+            }
+        }
+    }
+}
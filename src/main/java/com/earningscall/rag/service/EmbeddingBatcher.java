@@ -0,0 +1,121 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Packs texts into multi-input embedding requests bounded by input count and
+ * estimated token budget, and runs the resulting batches on the given executor.
+ * The number of batches in flight is bounded by the executor's pool size.
+ */
+@Slf4j
+public class EmbeddingBatcher {
+
+    // Rough chars-per-token ratio for English text with the OpenAI tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final EmbeddingModel embeddingModel;
+    private final int maxInputsPerBatch;
+    private final int maxTokensPerBatch;
+    private final Executor executor;
+    private final PipelineMetrics metrics;
+
+    public EmbeddingBatcher(EmbeddingModel embeddingModel, int maxInputsPerBatch,
+                            int maxTokensPerBatch, Executor executor, PipelineMetrics metrics) {
+        if (maxInputsPerBatch < 1 || maxTokensPerBatch < 1) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        this.embeddingModel = embeddingModel;
+        this.maxInputsPerBatch = maxInputsPerBatch;
+        this.maxTokensPerBatch = maxTokensPerBatch;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Embed all texts, returning one vector per text in input order
+     */
+    public List<float[]> embedAll(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+
+        List<Batch> batches = plan(texts);
+        float[][] vectors = new float[texts.size()][];
+
+        log.debug("Embedding {} texts in {} batches", texts.size(), batches.size());
+
+        if (batches.size() == 1) {
+            embedBatch(batches.get(0), vectors);
+            return Arrays.asList(vectors);
+        }
+
+        CompletableFuture<?>[] futures = batches.stream()
+                .map(batch -> CompletableFuture.runAsync(() -> embedBatch(batch, vectors), executor))
+                .toArray(CompletableFuture[]::new);
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            for (CompletableFuture<?> future : futures) {
+                future.cancel(false);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * Split texts into consecutive batches. A text whose estimate alone exceeds
+     * the token budget is sent in a batch of its own.
+     */
+    List<Batch> plan(List<String> texts) {
+        List<Batch> batches = new ArrayList<>();
+        int start = 0;
+        int tokens = 0;
+
+        for (int i = 0; i < texts.size(); i++) {
+            int textTokens = estimateTokens(texts.get(i));
+            int size = i - start;
+
+            if (size > 0 && (size >= maxInputsPerBatch || tokens + textTokens > maxTokensPerBatch)) {
+                batches.add(new Batch(start, texts.subList(start, i)));
+                start = i;
+                tokens = 0;
+            }
+            tokens += textTokens;
+        }
+        batches.add(new Batch(start, texts.subList(start, texts.size())));
+
+        return batches;
+    }
+
+    private void embedBatch(Batch batch, float[][] vectors) {
+        metrics.items(PipelineMetrics.EMBEDDING, batch.texts().size());
+        EmbeddingResponse response = metrics.time(PipelineMetrics.EMBEDDING,
+                () -> embeddingModel.call(new EmbeddingRequest(batch.texts(), null)));
+        float[][] placed = EmbeddingResults.inInputOrder(response.getResults(), batch.texts().size());
+        System.arraycopy(placed, 0, vectors, batch.offset(), placed.length);
+    }
+
+    static int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN + 1;
+    }
+
+    record Batch(int offset, List<String> texts) {
+    }
+}
@@ -0,0 +1,197 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.model.EmbeddingCacheEntry;
+import com.earningscall.rag.repository.EmbeddingCacheRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content-addressed embedding cache: an in-process LRU tier over a durable
+ * tier in Postgres, keyed by a hash of the embedding model name and the
+ * normalized text.
+ */
+@Slf4j
+@Service
+public class EmbeddingCache {
+
+    private final EmbeddingCacheRepository cacheRepository;
+    private final String modelName;
+    private final boolean durable;
+    private final Map<String, float[]> memory;
+    private final ReentrantLock memoryLock = new ReentrantLock();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong durableHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+
+    public EmbeddingCache(EmbeddingCacheRepository cacheRepository,
+                          @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}") String modelName,
+                          @Value("${rag.embedding.cache.memory-entries:20000}") int memoryEntries,
+                          @Value("${rag.embedding.cache.durable:true}") boolean durable) {
+        this.cacheRepository = cacheRepository;
+        this.modelName = modelName;
+        this.durable = durable;
+        this.memory = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache key for a text under the configured embedding model
+     */
+    public String keyFor(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up cached embeddings for the given texts, keyed by text.
+     * Texts without a cached embedding are absent from the result.
+     */
+    public Map<String, float[]> getAll(Collection<String> texts) {
+        Map<String, float[]> found = new HashMap<>();
+        // Texts that normalize to the same key share one lookup
+        Map<String, List<String>> pending = new HashMap<>();
+        for (String text : texts) {
+            pending.computeIfAbsent(keyFor(text), k -> new ArrayList<>(1)).add(text);
+        }
+
+        memoryLock.lock();
+        try {
+            pending.entrySet().removeIf(e -> {
+                float[] embedding = memory.get(e.getKey());
+                if (embedding == null) {
+                    return false;
+                }
+                recordHit(e.getValue(), embedding, found, memoryHits);
+                return true;
+            });
+        } finally {
+            memoryLock.unlock();
+        }
+
+        if (!pending.isEmpty() && durable) {
+            try {
+                List<EmbeddingCacheEntry> entries = cacheRepository.findAllById(pending.keySet());
+                memoryLock.lock();
+                try {
+                    for (EmbeddingCacheEntry entry : entries) {
+                        memory.put(entry.getCacheKey(), entry.getEmbedding());
+                        recordHit(pending.remove(entry.getCacheKey()), entry.getEmbedding(), found, durableHits);
+                    }
+                } finally {
+                    memoryLock.unlock();
+                }
+            } catch (Exception e) {
+                log.warn("Embedding cache lookup failed, treating as miss: {}", e.getMessage());
+            }
+        }
+
+        misses.addAndGet(pending.size());
+        return found;
+    }
+
+    private void recordHit(List<String> texts, float[] embedding,
+                           Map<String, float[]> found, AtomicLong tierHits) {
+        tierHits.incrementAndGet();
+        tokensSaved.addAndGet(EmbeddingBatcher.estimateTokens(texts.get(0)));
+        texts.forEach(text -> found.put(text, embedding));
+    }
+
+    /**
+     * Store freshly computed embeddings in both tiers
+     */
+    public void putAll(Map<String, float[]> embeddingsByText) {
+        if (embeddingsByText.isEmpty()) {
+            return;
+        }
+
+        List<EmbeddingCacheEntry> entries = embeddingsByText.entrySet().stream()
+                .map(e -> EmbeddingCacheEntry.builder()
+                        .cacheKey(keyFor(e.getKey()))
+                        .modelName(modelName)
+                        .embedding(e.getValue())
+                        .build())
+                .toList();
+
+        memoryLock.lock();
+        try {
+            entries.forEach(entry -> memory.put(entry.getCacheKey(), entry.getEmbedding()));
+        } finally {
+            memoryLock.unlock();
+        }
+
+        if (durable) {
+            try {
+                cacheRepository.insertIfAbsent(entries);
+            } catch (Exception e) {
+                // The memory tier already holds the entries; the cache stays usable either way
+                log.warn("Failed to persist {} embedding cache entries: {}", entries.size(), e.getMessage());
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        int entries;
+        memoryLock.lock();
+        try {
+            entries = memory.size();
+        } finally {
+            memoryLock.unlock();
+        }
+        return new CacheStats(memoryHits.get(), durableHits.get(), misses.get(), tokensSaved.get(), entries);
+    }
+
+    private static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return normalized.strip().replaceAll("\\s+", " ");
+    }
+
+    public record CacheStats(long memoryHits, long durableHits, long misses, long estimatedTokensSaved,
+                             int memoryEntries) {
+
+        public long hits() {
+            return memoryHits + durableHits;
+        }
+
+        public double hitRate() {
+            long total = hits() + misses;
+            return total == 0 ? 0.0 : (double) hits() / total;
+        }
+
+        public CacheStats since(CacheStats earlier) {
+            return new CacheStats(
+                    memoryHits - earlier.memoryHits,
+                    durableHits - earlier.durableHits,
+                    misses - earlier.misses,
+                    estimatedTokensSaved - earlier.estimatedTokensSaved,
+                    memoryEntries);
+        }
+    }
+}
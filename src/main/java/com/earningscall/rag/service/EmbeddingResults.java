@@ -0,0 +1,48 @@
+package com.earningscall.rag.service;
+
+import org.springframework.ai.embedding.Embedding;
+
+import java.util.List;
+
+/**
+ * Checks a multi-input embedding response before its vectors are matched to
+ * their inputs. Vectors are placed by the index the model reports, so a stray
+ * or repeated index would otherwise give one text another text's vector.
+ */
+final class EmbeddingResults {
+
+    private EmbeddingResults() {
+    }
+
+    /**
+     * The vectors of {@code results} in input order, one per input
+     *
+     * @throws IllegalStateException if the count, an index or a vector is invalid
+     */
+    static float[][] inInputOrder(List<Embedding> results, int inputs) {
+        if (results.size() != inputs) {
+            throw new IllegalStateException(String.format(
+                    "Embedding model returned %d vectors for %d inputs", results.size(), inputs));
+        }
+
+        float[][] placed = new float[inputs][];
+        for (int i = 0; i < results.size(); i++) {
+            Embedding embedding = results.get(i);
+            int position = embedding.getIndex() != null ? embedding.getIndex() : i;
+            if (position < 0 || position >= inputs) {
+                throw new IllegalStateException(String.format(
+                        "Embedding model returned index %d for a batch of %d inputs", position, inputs));
+            }
+            if (placed[position] != null) {
+                throw new IllegalStateException(String.format(
+                        "Embedding model returned index %d twice in a batch of %d inputs", position, inputs));
+            }
+            if (embedding.getOutput() == null || embedding.getOutput().length == 0) {
+                throw new IllegalStateException(String.format(
+                        "Embedding model returned an empty vector for index %d", position));
+            }
+            placed[position] = embedding.getOutput();
+        }
+        return placed;
+    }
+}
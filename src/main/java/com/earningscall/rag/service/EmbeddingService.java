@@ -1,42 +1,67 @@
 package com.earningscall.rag.service;
 
-import lombok.RequiredArgsConstructor;
+import com.earningscall.rag.util.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmbeddingService {
 
     private final EmbeddingModel embeddingModel;
+    private final Executor embeddingExecutor;
+    private final PipelineMetrics metrics;
+
+    @Value("${rag.embedding.batch.max-inputs:64}")
+    private int maxInputsPerBatch;
+
+    @Value("${rag.embedding.batch.max-tokens:6000}")
+    private int maxTokensPerBatch;
+
+    private EmbeddingBatcher batcher;
+
+    public EmbeddingService(EmbeddingModel embeddingModel,
+                            @Qualifier("embeddingExecutor") Executor embeddingExecutor,
+                            PipelineMetrics metrics) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingExecutor = embeddingExecutor;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void initBatcher() {
+        batcher = new EmbeddingBatcher(embeddingModel, maxInputsPerBatch, maxTokensPerBatch, embeddingExecutor,
+                metrics);
+    }
 
     /**
      * Generate embedding for a single text
      */
-    public List<Double> generateEmbedding(String text) {
+    public float[] generateEmbedding(String text) {
         log.debug("Generating embedding for text of length: {}", text.length());
 
-        EmbeddingResponse response = embeddingModel.call(
-                new EmbeddingRequest(List.of(text), null));
+        EmbeddingResponse response = metrics.time(PipelineMetrics.QUERY_EMBEDDING,
+                () -> embeddingModel.call(new EmbeddingRequest(List.of(text), null)));
 
         return response.getResults().get(0).getOutput();
     }
 
     /**
-     * Generate embeddings for multiple texts in batch
+     * Generate embeddings for multiple texts using multi-input requests,
+     * returned in input order
      */
-    public List<List<Double>> generateEmbeddingsBatch(List<String> texts) {
+    public List<float[]> generateEmbeddingsBatch(List<String> texts) {
         log.info("Generating embeddings for {} texts", texts.size());
 
-        return texts.stream()
-                .map(this::generateEmbedding)
-                .collect(Collectors.toList());
+        return batcher.embedAll(texts);
     }
 }
@@ -0,0 +1,288 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.PdfTextExtractor;
+import com.earningscall.rag.util.PipelineMetrics;
+import com.earningscall.rag.util.TextChunker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, back-pressured ingestion pipeline:
+ * page extraction -> chunking -> batched embedding -> batched writes.
+ * <p>
+ * Extraction and chunking run on the calling thread and hand chunk batches to
+ * the embedding stage, which hands them to the write stage; each hand-off is a
+ * bounded queue, so a slow stage stalls the ones before it instead of letting
+ * pages, chunks or vectors pile up. Batches are searchable as soon as they are
+ * written.
+ */
+@Slf4j
+@Service
+public class IngestionPipeline {
+
+    // Identity sentinel marking the end of the stream
+    private static final List<TextChunker.TextChunk> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private static final long POLL_MILLIS = 100;
+
+    private final PdfTextExtractor pdfTextExtractor;
+    private final TextChunker textChunker;
+    private final VectorStorageService vectorStorageService;
+    private final EmbeddingCache embeddingCache;
+    private final AnswerCache answerCache;
+    private final IngestionProgressTracker progressTracker;
+    private final PipelineMetrics metrics;
+    private final Executor stageExecutor;
+
+    @Value("${rag.ingest.batch-size:64}")
+    private int batchSize;
+
+    @Value("${rag.ingest.queue-capacity:4}")
+    private int queueCapacity;
+
+    public IngestionPipeline(PdfTextExtractor pdfTextExtractor,
+                             TextChunker textChunker,
+                             VectorStorageService vectorStorageService,
+                             EmbeddingCache embeddingCache,
+                             AnswerCache answerCache,
+                             IngestionProgressTracker progressTracker,
+                             PipelineMetrics metrics,
+                             @Qualifier("ingestionIoExecutor") Executor stageExecutor) {
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.textChunker = textChunker;
+        this.vectorStorageService = vectorStorageService;
+        this.embeddingCache = embeddingCache;
+        this.answerCache = answerCache;
+        this.progressTracker = progressTracker;
+        this.metrics = metrics;
+        this.stageExecutor = stageExecutor;
+    }
+
+    /**
+     * Ingest a PDF end to end
+     *
+     * @return number of chunks stored
+     */
+    public int ingest(VectorStorageService.ChunkSource source, File pdfFile) throws Exception {
+        UUID documentId = source.documentId();
+        IngestionProgressTracker.Progress progress = progressTracker.start(documentId);
+        EmbeddingCache.CacheStats cacheBefore = embeddingCache.stats();
+
+        BlockingQueue<List<TextChunker.TextChunk>> toEmbed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<TextChunker.TextChunk>> toStore = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<String> storedIds = new CopyOnWriteArrayList<>();
+
+        try {
+            List<CompletableFuture<Void>> stages = new ArrayList<>(2);
+            try {
+                stages.add(CompletableFuture.runAsync(() -> runStage(toEmbed, failure, batch -> {
+                    vectorStorageService.embedChunks(batch);
+                    progress.chunksEmbedded(batch.size());
+                    offer(toStore, batch, failure);
+                }, () -> offer(toStore, END, failure)), stageExecutor));
+
+                stages.add(CompletableFuture.runAsync(() -> runStage(toStore, failure, batch -> {
+                    storedIds.addAll(vectorStorageService.storeChunks(source, batch));
+                    progress.chunksStored(batch.size());
+                    // Newly searchable chunks can change answers in this document's scope
+                    answerCache.invalidateDocument(documentId, source.companyName());
+                }, () -> { }), stageExecutor));
+            } catch (RejectedExecutionException e) {
+                // A stage that did start stops polling once it sees the failure
+                failure.compareAndSet(null, e);
+                awaitStages(stages);
+                throw e;
+            }
+
+            try {
+                BatchingSink sink = new BatchingSink(toEmbed, failure, progress);
+                TextChunker.Session session = textChunker.newSession(sink);
+
+                int pages = pdfTextExtractor.extractText(pdfFile, page -> {
+                    progress.pageExtracted();
+                    chunkPage(session, sink, page);
+                });
+
+                if (pages == 0) {
+                    throw new RuntimeException("No text could be extracted from PDF");
+                }
+
+                session.finish();
+                sink.flush();
+                offer(toEmbed, END, failure);
+            } catch (PipelineAbortedException e) {
+                // A downstream stage failed; its error is already recorded
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+
+            awaitStages(stages);
+
+            Throwable error = failure.get();
+            if (error != null) {
+                discardPartialDocument(source, storedIds);
+                throw error instanceof Exception ex ? ex : new RuntimeException(error);
+            }
+
+            if (progress.getChunksStored() == 0) {
+                throw new RuntimeException("No chunks created from PDF text");
+            }
+
+            EmbeddingCache.CacheStats upload = embeddingCache.stats().since(cacheBefore);
+            log.info("Ingested document {}: {} pages, {} chunks; embedding cache {} hits, {} misses, ~{} tokens saved",
+                    documentId, progress.getPagesExtracted(), progress.getChunksStored(),
+                    upload.hits(), upload.misses(), upload.estimatedTokensSaved());
+
+            return progress.getChunksStored();
+
+        } finally {
+            progressTracker.finish(documentId);
+        }
+    }
+
+    /**
+     * Chunk one page, timing the chunker without the time the sink spent
+     * blocked on a full embedding queue
+     */
+    private void chunkPage(TextChunker.Session session, BatchingSink sink, PdfTextExtractor.PageContent page) {
+        long start = System.nanoTime();
+        long blockedBefore = sink.blockedNanos;
+        boolean success = false;
+        try {
+            session.accept(page);
+            success = true;
+        } finally {
+            metrics.recordNanos(PipelineMetrics.CHUNKING,
+                    System.nanoTime() - start - (sink.blockedNanos - blockedBefore), success);
+        }
+    }
+
+    private static void awaitStages(List<CompletableFuture<Void>> stages) {
+        CompletableFuture.allOf(stages.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+    }
+
+    /**
+     * Consume batches until the end marker or a failure anywhere in the pipeline
+     */
+    private void runStage(BlockingQueue<List<TextChunker.TextChunk>> input, AtomicReference<Throwable> failure,
+                          Consumer<List<TextChunker.TextChunk>> handler, Runnable onEnd) {
+        try {
+            while (failure.get() == null) {
+                List<TextChunker.TextChunk> batch = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == END) {
+                    onEnd.run();
+                    return;
+                }
+                if (batch != null) {
+                    handler.accept(batch);
+                }
+            }
+        } catch (PipelineAbortedException e) {
+            // Another stage failed first
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Blocking hand-off to the next stage that gives up once the pipeline has failed
+     */
+    private static void offer(BlockingQueue<List<TextChunker.TextChunk>> queue, List<TextChunker.TextChunk> batch,
+                              AtomicReference<Throwable> failure) {
+        try {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw new PipelineAbortedException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineAbortedException();
+        }
+    }
+
+    /**
+     * Removes the batches stored before the failure, then drops cached answers
+     * for the document's scope even when the delete failed, since answers built
+     * on those chunks may already be cached
+     */
+    private void discardPartialDocument(VectorStorageService.ChunkSource source, List<String> storedIds) {
+        if (storedIds.isEmpty()) {
+            return;
+        }
+        UUID documentId = source.documentId();
+        try {
+            vectorStorageService.deleteChunks(documentId, storedIds);
+        } catch (Exception e) {
+            log.warn("Failed to remove {} partially stored chunks for document {}", storedIds.size(), documentId, e);
+        } finally {
+            answerCache.invalidateDocument(documentId, source.companyName());
+        }
+    }
+
+    /**
+     * Groups chunks from the chunker into fixed-size batches for the embedding stage
+     */
+    private final class BatchingSink implements Consumer<TextChunker.TextChunk> {
+
+        private final BlockingQueue<List<TextChunker.TextChunk>> output;
+        private final AtomicReference<Throwable> failure;
+        private final IngestionProgressTracker.Progress progress;
+        private List<TextChunker.TextChunk> batch = new ArrayList<>(batchSize);
+        // Time spent waiting for room in the output queue
+        private long blockedNanos;
+
+        private BatchingSink(BlockingQueue<List<TextChunker.TextChunk>> output, AtomicReference<Throwable> failure,
+                             IngestionProgressTracker.Progress progress) {
+            this.output = output;
+            this.failure = failure;
+            this.progress = progress;
+        }
+
+        @Override
+        public void accept(TextChunker.TextChunk chunk) {
+            progress.chunkCreated();
+            batch.add(chunk);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                long start = System.nanoTime();
+                offer(output, batch, failure);
+                blockedNanos += System.nanoTime() - start;
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    private static final class PipelineAbortedException extends RuntimeException {
+
+        PipelineAbortedException() {
+            super("Ingestion pipeline aborted", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.earningscall.rag.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process progress of documents that are currently being ingested
+ */
+@Component
+public class IngestionProgressTracker {
+
+    private final Map<UUID, Progress> inProgress = new ConcurrentHashMap<>();
+
+    public Progress start(UUID documentId) {
+        Progress progress = new Progress();
+        inProgress.put(documentId, progress);
+        return progress;
+    }
+
+    public Optional<Progress> get(UUID documentId) {
+        return Optional.ofNullable(inProgress.get(documentId));
+    }
+
+    public void finish(UUID documentId) {
+        inProgress.remove(documentId);
+    }
+
+    public static class Progress {
+
+        private final AtomicInteger pagesExtracted = new AtomicInteger();
+        private final AtomicInteger chunksCreated = new AtomicInteger();
+        private final AtomicInteger chunksEmbedded = new AtomicInteger();
+        private final AtomicInteger chunksStored = new AtomicInteger();
+
+        public void pageExtracted() {
+            pagesExtracted.incrementAndGet();
+        }
+
+        public void chunkCreated() {
+            chunksCreated.incrementAndGet();
+        }
+
+        public void chunksEmbedded(int count) {
+            chunksEmbedded.addAndGet(count);
+        }
+
+        public void chunksStored(int count) {
+            chunksStored.addAndGet(count);
+        }
+
+        public int getPagesExtracted() {
+            return pagesExtracted.get();
+        }
+
+        public int getChunksCreated() {
+            return chunksCreated.get();
+        }
+
+        public int getChunksEmbedded() {
+            return chunksEmbedded.get();
+        }
+
+        public int getChunksStored() {
+            return chunksStored.get();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.HnswIndex;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Maximal marginal relevance: picks candidates one at a time, each time the
+ * one with the best trade-off between its relevance and its similarity to
+ * those already picked, so near-identical passages do not crowd the rest of
+ * the evidence out of the context. Candidates are compared by the embeddings
+ * they were retrieved with; nothing is embedded again.
+ * <p>
+ * Consecutive chunks of a document share the chunker's overlap, so a
+ * candidate next to a picked chunk counts as fully redundant with it, and a
+ * candidate whose similarity to a picked one reaches duplicateSimilarity is
+ * dropped. Once the time budget is spent the free slots are filled in
+ * relevance order.
+ */
+final class MaximalMarginalRelevance {
+
+    private MaximalMarginalRelevance() {
+    }
+
+    /**
+     * @param candidates best first; a candidate without an embedding is only
+     *                   redundant with its neighbouring chunks
+     * @param lambda     weight of relevance against redundancy, 1 keeps relevance order
+     */
+    static List<Ranked> select(List<Ranked> candidates, int limit, double lambda,
+                               double duplicateSimilarity, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int n = candidates.size();
+        List<Ranked> selected = new ArrayList<>(Math.min(limit, n));
+        if (n == 0 || limit <= 0) {
+            return selected;
+        }
+
+        // Relevance scaled so the best candidate scores 1, on the same scale as cosine similarity
+        double maxRelevance = 0.0;
+        for (Ranked candidate : candidates) {
+            maxRelevance = Math.max(maxRelevance, candidate.relevance());
+        }
+        double[] relevance = new double[n];
+        float[][] vectors = new float[n][];
+        double[] norms = new double[n];
+        for (int i = 0; i < n; i++) {
+            Ranked candidate = candidates.get(i);
+            relevance[i] = maxRelevance > 0.0 ? candidate.relevance() / maxRelevance : 0.0;
+            float[] vector = candidate.document().getEmbedding();
+            if (vector != null && vector.length > 0) {
+                vectors[i] = vector;
+                norms[i] = Math.sqrt(HnswIndex.dot(vector, vector));
+            }
+        }
+
+        // Highest similarity to any picked candidate; taken covers picked and dropped ones
+        double[] redundancy = new double[n];
+        boolean[] taken = new boolean[n];
+
+        while (selected.size() < limit && System.nanoTime() < deadline) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (!taken[i]) {
+                    double score = lambda * relevance[i] - (1.0 - lambda) * redundancy[i];
+                    if (score > bestScore) {
+                        best = i;
+                        bestScore = score;
+                    }
+                }
+            }
+            if (best < 0) {
+                return selected;
+            }
+            taken[best] = true;
+            selected.add(candidates.get(best));
+
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double similarity = cosine(vectors[i], norms[i], vectors[best], norms[best]);
+                if (similarity >= duplicateSimilarity) {
+                    taken[i] = true;
+                } else if (adjacent(candidates.get(i).document(), candidates.get(best).document())) {
+                    redundancy[i] = 1.0;
+                } else {
+                    redundancy[i] = Math.max(redundancy[i], similarity);
+                }
+            }
+        }
+
+        for (int i = 0; i < n && selected.size() < limit; i++) {
+            if (!taken[i]) {
+                selected.add(candidates.get(i));
+            }
+        }
+        return selected;
+    }
+
+    private static double cosine(float[] a, double normA, float[] b, double normB) {
+        if (a == null || b == null || normA == 0.0 || normB == 0.0) {
+            return 0.0;
+        }
+        return HnswIndex.dot(a, b) / (normA * normB);
+    }
+
+    /**
+     * Consecutive chunks of the same document
+     */
+    private static boolean adjacent(Document a, Document b) {
+        Object documentId = a.getMetadata().get("documentId");
+        if (documentId == null || !Objects.equals(documentId, b.getMetadata().get("documentId"))) {
+            return false;
+        }
+        if (a.getMetadata().get("chunkIndex") instanceof Integer indexA
+                && b.getMetadata().get("chunkIndex") instanceof Integer indexB) {
+            return Math.abs(indexA - indexB) == 1;
+        }
+        return false;
+    }
+
+    /**
+     * A candidate and its first-stage score: cosine similarity or fused rank score
+     */
+    record Ranked(Document document, double relevance) {
+    }
+}
@@ -2,38 +2,67 @@ package com.earningscall.rag.service;
 
 import com.earningscall.rag.model.Document;
 import com.earningscall.rag.repository.DocumentRepository;
-import com.earningscall.rag.util.PdfTextExtractor;
-import com.earningscall.rag.util.TextChunker;
-import lombok.RequiredArgsConstructor;
+import com.earningscall.rag.util.CompanyKey;
+import com.earningscall.rag.util.UploadSpool;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class PdfProcessingService {
 
     private final DocumentRepository documentRepository;
-    private final PdfTextExtractor pdfTextExtractor;
-    private final TextChunker textChunker;
-    private final VectorStorageService vectorStorageService;
+    private final IngestionPipeline ingestionPipeline;
+    private final IngestionProgressTracker progressTracker;
+    private final UploadSpool uploadSpool;
+    private final Executor ingestionExecutor;
+
+    // Serializes the duplicate check with the insert of a new document; a lock
+    // rather than a monitor, so a virtual thread waiting on it does not pin its carrier
+    private final ReentrantLock uploadLock = new ReentrantLock();
+
+    public PdfProcessingService(DocumentRepository documentRepository,
+                                IngestionPipeline ingestionPipeline,
+                                IngestionProgressTracker progressTracker,
+                                UploadSpool uploadSpool,
+                                @Qualifier("ingestionExecutor") Executor ingestionExecutor) {
+        this.documentRepository = documentRepository;
+        this.ingestionPipeline = ingestionPipeline;
+        this.progressTracker = progressTracker;
+        this.uploadSpool = uploadSpool;
+        this.ingestionExecutor = ingestionExecutor;
+    }
 
     /**
-     * Upload PDF and initiate async processing
+     * Upload PDF and initiate async processing. Uploading bytes that match a
+     * document of the same company and fiscal period that is pending,
+     * processing or completed returns that document instead of ingesting them
+     * again.
+     * <p>
+     * Not transactional: the document row must be committed before a worker
+     * can pick it up.
+     *
+     * @throws TaskRejectedException if the ingestion backlog is full
      */
-    @Transactional
-    public Document uploadDocument(MultipartFile file, String companyName) throws IOException {
+    public UploadResult uploadDocument(MultipartFile file, String companyName, Integer fiscalYear,
+                                       Integer fiscalQuarter) throws IOException {
         log.info("Uploading document: {} for company: {}", file.getOriginalFilename(), companyName);
 
         // Validate file
@@ -41,83 +70,116 @@ public class PdfProcessingService {
             throw new IllegalArgumentException("File is empty");
         }
 
+        if (fiscalQuarter != null && (fiscalQuarter < 1 || fiscalQuarter > 4)) {
+            throw new IllegalArgumentException("Fiscal quarter must be between 1 and 4");
+        }
+
         if (!file.getContentType().equals("application/pdf")) {
             throw new IllegalArgumentException("File must be PDF");
         }
 
-        // Create document record
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("originalFilename", file.getOriginalFilename());
-        metadata.put("fileSize", file.getSize());
-        metadata.put("contentType", file.getContentType());
+        // Copy to our spool while hashing; the multipart file does not outlive the request
+        UploadSpool.SpooledUpload upload;
+        try (InputStream in = file.getInputStream()) {
+            upload = uploadSpool.spool(in);
+        }
 
-        Document document = Document.builder()
-                .filename(file.getOriginalFilename())
-                .companyName(companyName)
-                .uploadTimestamp(LocalDateTime.now())
-                .processingStatus(Document.ProcessingStatus.PENDING)
-                .totalChunks(0)
-                .metadata(metadata)
-                .build();
+        Document document;
+        uploadLock.lock();
+        try {
+            // The same bytes filed under another company or period are a new document,
+            // or its chunks would never match that scope's filters
+            Optional<Document> existing = documentRepository
+                    .findByContentHashAndProcessingStatusNotOrderByUploadTimestampDesc(
+                            upload.sha256(), Document.ProcessingStatus.FAILED)
+                    .stream()
+                    .filter(candidate -> sameScope(candidate, companyName, fiscalYear, fiscalQuarter))
+                    .findFirst();
+
+            if (existing.isPresent()) {
+                uploadSpool.discard(upload.path());
+                log.info("Upload matches document {} (sha256 {}), skipping ingestion",
+                        existing.get().getId(), upload.sha256());
+                return new UploadResult(existing.get(), true);
+            }
 
-        document = documentRepository.save(document);
+            // Create document record
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("originalFilename", file.getOriginalFilename());
+            metadata.put("fileSize", upload.size());
+            metadata.put("contentType", file.getContentType());
+
+            document = Document.builder()
+                    .filename(file.getOriginalFilename())
+                    .companyName(companyName)
+                    .fiscalYear(fiscalYear)
+                    .fiscalQuarter(fiscalQuarter)
+                    .uploadTimestamp(LocalDateTime.now())
+                    .processingStatus(Document.ProcessingStatus.PENDING)
+                    .totalChunks(0)
+                    .contentHash(upload.sha256())
+                    .metadata(metadata)
+                    .build();
+
+            document = documentRepository.save(document);
+        } finally {
+            uploadLock.unlock();
+        }
 
         log.info("Document created with ID: {}", document.getId());
 
+        // Spooled under the document's id, so a later upload of the same bytes
+        // never shares, and never deletes, this document's file
+        UUID documentId = document.getId();
+        Path pdfFile;
+        try {
+            pdfFile = uploadSpool.commit(upload, documentId);
+        } catch (IOException e) {
+            documentRepository.deleteById(documentId);
+            uploadSpool.discard(upload.path());
+            throw e;
+        }
+
         // Process asynchronously
-        processDocumentAsync(document.getId(), file);
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                documentId, document.getFilename(), companyName, fiscalYear, fiscalQuarter);
+        try {
+            ingestionExecutor.execute(() -> processDocument(source, pdfFile));
+        } catch (TaskRejectedException e) {
+            log.warn("Ingestion backlog full, rejecting document {}", documentId);
+            documentRepository.deleteById(documentId);
+            uploadSpool.discard(pdfFile);
+            throw e;
+        }
 
-        return document;
+        return new UploadResult(document, false);
     }
 
     /**
-     * Process PDF asynchronously using CompletableFuture
+     * Run the ingestion pipeline for an uploaded document; called on an ingestion worker
      */
-    @Async("taskExecutor")
-    public CompletableFuture<Void> processDocumentAsync(UUID documentId, MultipartFile file) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                log.info("Starting async processing for document: {}", documentId);
-
-                // Update status to PROCESSING
-                updateDocumentStatus(documentId, Document.ProcessingStatus.PROCESSING);
-
-                // Extract text from PDF
-                List<PdfTextExtractor.PageContent> pages = pdfTextExtractor.extractText(
-                        file.getInputStream());
-
-                if (pages.isEmpty()) {
-                    throw new RuntimeException("No text could be extracted from PDF");
-                }
-
-                // Chunk the text
-                List<TextChunker.TextChunk> chunks = textChunker.chunkText(pages);
+    private void processDocument(VectorStorageService.ChunkSource source, Path pdfFile) {
+        UUID documentId = source.documentId();
+        try {
+            log.info("Starting async processing for document: {}", documentId);
 
-                if (chunks.isEmpty()) {
-                    throw new RuntimeException("No chunks created from PDF text");
-                }
+            // Update status to PROCESSING
+            updateDocumentStatus(documentId, Document.ProcessingStatus.PROCESSING);
 
-                // Get document info
-                Document document = documentRepository.findById(documentId)
-                        .orElseThrow(() -> new RuntimeException("Document not found"));
+            // Extract, chunk, embed and store as a streaming pipeline
+            int chunkCount = ingestionPipeline.ingest(source, pdfFile.toFile());
 
-                // Store chunks with embeddings in vector database
-                vectorStorageService.storeChunks(
-                        documentId,
-                        document.getFilename(),
-                        chunks);
+            // Update document status and chunk count
+            updateDocumentCompletion(documentId, chunkCount);
 
-                // Update document status and chunk count
-                updateDocumentCompletion(documentId, chunks.size());
+            log.info("Successfully completed processing for document: {}", documentId);
 
-                log.info("Successfully completed processing for document: {}", documentId);
-
-            } catch (Exception e) {
-                log.error("Error processing document: {}", documentId, e);
-                updateDocumentStatus(documentId, Document.ProcessingStatus.FAILED);
-                throw new RuntimeException("Failed to process document", e);
-            }
-        });
+        } catch (Exception e) {
+            log.error("Error processing document: {}", documentId, e);
+            updateDocumentStatus(documentId, Document.ProcessingStatus.FAILED);
+        } finally {
+            uploadSpool.discard(pdfFile);
+        }
     }
 
     @Transactional
@@ -147,6 +209,13 @@ public class PdfProcessingService {
                 .orElseThrow(() -> new RuntimeException("Document not found: " + documentId));
     }
 
+    /**
+     * Live progress of a document that is currently being ingested
+     */
+    public Optional<IngestionProgressTracker.Progress> getProgress(UUID documentId) {
+        return progressTracker.get(documentId);
+    }
+
     /**
      * Get all documents
      */
@@ -160,4 +229,18 @@ public class PdfProcessingService {
     public List<Document> getDocumentsByCompany(String companyName) {
         return documentRepository.findByCompanyNameContainingIgnoreCase(companyName);
     }
+
+    private static boolean sameScope(Document document, String companyName, Integer fiscalYear,
+                                     Integer fiscalQuarter) {
+        return Objects.equals(CompanyKey.of(document.getCompanyName()), CompanyKey.of(companyName))
+                && Objects.equals(document.getFiscalYear(), fiscalYear)
+                && Objects.equals(document.getFiscalQuarter(), fiscalQuarter);
+    }
+
+    /**
+     * Uploaded document; {@code duplicate} is set when the same bytes were already uploaded for the same
+     * company and fiscal period
+     */
+    public record UploadResult(Document document, boolean duplicate) {
+    }
 }
@@ -1,17 +1,33 @@
 package com.earningscall.rag.service;
 
+import com.earningscall.rag.model.dto.AnswerStreamEvent;
+import com.earningscall.rag.model.dto.BatchAnswerEvent;
 import com.earningscall.rag.model.dto.QuestionRequest;
 import com.earningscall.rag.model.dto.QuestionResponse;
+import com.earningscall.rag.util.Elapsed;
+import com.earningscall.rag.util.PipelineMetrics;
+import com.earningscall.rag.util.TokenCounter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -21,6 +37,18 @@ public class RagService {
 
     private final VectorStorageService vectorStorageService;
     private final ChatClient.Builder chatClientBuilder;
+    private final EmbeddingService embeddingService;
+    private final AnswerCache answerCache;
+    private final ContextAssembler contextAssembler;
+    private final PipelineMetrics metrics;
+    private final TokenCounter tokenCounter;
+    private final Scheduler answerScheduler;
+
+    @Value("${rag.batch.search-concurrency:8}")
+    private int batchSearchConcurrency;
+
+    @Value("${rag.batch.llm-concurrency:4}")
+    private int batchLlmConcurrency;
 
     private static final String RAG_PROMPT_TEMPLATE = """
             You are an AI assistant specialized in analyzing earnings call transcripts.
@@ -37,6 +65,9 @@ public class RagService {
             Answer:
             """;
 
+    private static final String NO_CHUNKS_ANSWER =
+            "I couldn't find any relevant information in the uploaded documents to answer this question.";
+
     /**
      * Answer a question using RAG pipeline
      */
@@ -46,94 +77,379 @@ public class RagService {
         log.info("Processing question: {}", request.getQuestion());
 
         try {
-            // Step 1: Retrieval - Find relevant chunks using semantic search
-            List<VectorStorageService.RetrievedChunk> retrievedChunks = vectorStorageService.searchSimilarChunks(
-                    request.getQuestion(),
-                    request.getDocumentId(),
-                    request.getCompanyName());
-
-            if (retrievedChunks.isEmpty()) {
-                log.warn("No relevant chunks found for question");
-                return QuestionResponse.builder()
-                        .answer("I couldn't find any relevant information in the uploaded documents to answer this question.")
-                        .confidenceScore(0.0)
-                        .sources(List.of())
-                        .processingTimeMs(System.currentTimeMillis() - startTime)
-                        .build();
+            PreparedAnswer prepared = prepare(request, startTime, null);
+            if (prepared.immediate() != null) {
+                return prepared.immediate();
             }
 
-            // Step 2: Augmentation - Build context from retrieved chunks
-            String context = buildContext(retrievedChunks);
+            // Step 3: Generation - Use LLM to generate answer
+            String answer = generateAnswer(request.getQuestion(), prepared.context(), prepared.timings());
 
-            log.debug("Built context from {} chunks", retrievedChunks.size());
+            return complete(request, prepared, answer, startTime);
 
-            // Step 3: Generation - Use LLM to generate answer
-            String answer = generateAnswer(request.getQuestion(), context);
-
-            // Build source citations
-            List<QuestionResponse.SourceCitation> sources = retrievedChunks.stream()
-                    .map(chunk -> QuestionResponse.SourceCitation.builder()
-                            .documentName(chunk.getDocumentName())
-                            .pageNumber(chunk.getPageNumber())
-                            .relevantText(truncateText(chunk.getText(), 200))
-                            .similarityScore(chunk.getSimilarityScore())
-                            .build())
-                    .collect(Collectors.toList());
-
-            // Calculate confidence score based on similarity scores
-            double avgSimilarity = retrievedChunks.stream()
-                    .mapToDouble(VectorStorageService.RetrievedChunk::getSimilarityScore)
-                    .average()
-                    .orElse(0.0);
+        } catch (Exception e) {
+            log.error("Error answering question", e);
+            throw new RuntimeException("Failed to process question: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Answer a question as a stream of events: the source citations as soon as
+     * retrieval finishes, then answer tokens as the model produces them, then a
+     * final event with the processing time and confidence score
+     */
+    public Flux<AnswerStreamEvent> streamAnswer(QuestionRequest request) {
+        long startTime = System.currentTimeMillis();
+
+        log.info("Processing streaming question: {}", request.getQuestion());
+
+        // Retrieval is blocking, so keep it off the subscriber's thread
+        return Mono.fromCallable(() -> prepare(request, startTime, null))
+                .subscribeOn(answerScheduler)
+                .flatMapMany(prepared -> {
+                    if (prepared.immediate() != null) {
+                        QuestionResponse response = prepared.immediate();
+                        return Flux.just(
+                                AnswerStreamEvent.sources(response.getSources()),
+                                AnswerStreamEvent.token(response.getAnswer()),
+                                AnswerStreamEvent.done(response));
+                    }
+
+                    StringBuilder answer = new StringBuilder();
+
+                    Flux<AnswerStreamEvent> tokens = streamGeneration(request.getQuestion(), prepared.context(), answer,
+                            prepared.timings())
+                            .map(AnswerStreamEvent::token);
+
+                    Mono<AnswerStreamEvent> done = Mono.fromSupplier(() -> AnswerStreamEvent.done(
+                            complete(request, prepared, answer.toString().trim(), startTime)));
+
+                    return Flux.concat(
+                            Flux.just(AnswerStreamEvent.sources(prepared.sources())),
+                            tokens,
+                            done);
+                });
+    }
+
+    /**
+     * Answer many questions at once. All questions are embedded up front in
+     * multi-input calls of at most 'rag.embedding.batch.max-inputs' each, so a
+     * batch larger than that limit is split across concurrent calls. Each
+     * embedding is passed on to the answer cache and both retrieval legs, so
+     * no question is embedded again; if embedding fails, every question gets
+     * an error event. Retrieval then runs for up
+     * to 'batchSearchConcurrency' questions at a time, staying that far ahead
+     * of generation, which runs for up to 'batchLlmConcurrency'. Questions with
+     * the same text and retrieved context share one generation; only the
+     * question that ran it reports the generation's time and token counts,
+     * the others leave them null. Answers are emitted as they complete,
+     * followed by a summary event.
+     */
+    public Flux<BatchAnswerEvent> answerBatch(List<QuestionRequest> requests) {
+        long startTime = System.currentTimeMillis();
 
+        log.info("Processing batch of {} questions", requests.size());
+
+        List<String> questions = requests.stream().map(QuestionRequest::getQuestion).toList();
+        Map<String, Mono<Generation>> generations = new ConcurrentHashMap<>();
+        AtomicInteger answered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        Flux<BatchAnswerEvent> answers = Mono.fromCallable(() -> embeddingService.generateEmbeddingsBatch(questions))
+                .subscribeOn(answerScheduler)
+                .map(embeddings -> Flux.range(0, requests.size())
+                        .flatMap(index -> retrieveBatchItem(requests.get(index), index, embeddings.get(index),
+                                startTime), batchSearchConcurrency)
+                        .flatMap(item -> generateBatchAnswer(requests.get(item.index()), item, generations,
+                                startTime), batchLlmConcurrency))
+                // Only the embedding call fails here; later failures are per question
+                .onErrorResume(e -> {
+                    log.warn("Batch of {} questions failed during embedding", requests.size(), e);
+                    return Mono.just(Flux.range(0, requests.size())
+                            .map(index -> BatchAnswerEvent.error(index, questions.get(index), e.getMessage())));
+                })
+                .flatMapMany(events -> events)
+                .doOnNext(event -> (event.getType() == BatchAnswerEvent.Type.ANSWER ? answered : failed)
+                        .incrementAndGet());
+
+        return answers.concatWith(Mono.fromSupplier(() -> {
             long processingTime = System.currentTimeMillis() - startTime;
+            log.info("Batch of {} questions answered in {}ms ({} failed, {} generations)",
+                    requests.size(), processingTime, failed.get(), generations.size());
+            return BatchAnswerEvent.done(answered.get(), failed.get(), processingTime);
+        }));
+    }
 
-            log.info("Question answered in {}ms with confidence {}", processingTime, avgSimilarity);
+    private Mono<BatchItem> retrieveBatchItem(QuestionRequest request, int index, float[] questionEmbedding,
+                                              long startTime) {
+        return Mono.fromCallable(() -> prepare(request, startTime, questionEmbedding))
+                .subscribeOn(answerScheduler)
+                .map(prepared -> new BatchItem(index, prepared, null))
+                .onErrorResume(e -> Mono.just(new BatchItem(index, null, e)));
+    }
 
-            return QuestionResponse.builder()
-                    .answer(answer)
-                    .confidenceScore(avgSimilarity)
-                    .sources(sources)
-                    .processingTimeMs(processingTime)
-                    .build();
+    private Mono<BatchAnswerEvent> generateBatchAnswer(QuestionRequest request, BatchItem item,
+                                                       Map<String, Mono<Generation>> generations, long startTime) {
+        String question = request.getQuestion();
+        if (item.error() != null) {
+            log.warn("Batch question {} failed during retrieval", item.index(), item.error());
+            return Mono.just(BatchAnswerEvent.error(item.index(), question, item.error().getMessage()));
+        }
 
-        } catch (Exception e) {
-            log.error("Error answering question", e);
-            throw new RuntimeException("Failed to process question: " + e.getMessage(), e);
+        PreparedAnswer prepared = item.prepared();
+        if (prepared.immediate() != null) {
+            return Mono.just(BatchAnswerEvent.answer(item.index(), question, prepared.immediate()));
+        }
+
+        // The first question with this text and context generates; later ones reuse its answer
+        String key = question.strip() + '\n' + prepared.context();
+        AtomicBoolean generates = new AtomicBoolean();
+        Mono<Generation> generation = generations.computeIfAbsent(key, k -> {
+            generates.set(true);
+            return Mono.fromCallable(() -> {
+                        QuestionResponse.StageTimings timings = new QuestionResponse.StageTimings();
+                        return new Generation(generateAnswer(question, prepared.context(), timings), timings);
+                    })
+                    .subscribeOn(answerScheduler)
+                    .cache();
+        });
+
+        return generation
+                .map(result -> {
+                    // Reusing questions spent no LLM time or tokens of their own
+                    if (prepared.timings() != null && generates.get()) {
+                        prepared.timings().setLlmTotalMs(result.timings().getLlmTotalMs());
+                        prepared.timings().setPromptTokens(result.timings().getPromptTokens());
+                        prepared.timings().setCompletionTokens(result.timings().getCompletionTokens());
+                    }
+                    return BatchAnswerEvent.answer(item.index(), question,
+                            complete(request, prepared, result.answer(), startTime));
+                })
+                .onErrorResume(e -> {
+                    log.warn("Batch question {} failed during generation", item.index(), e);
+                    return Mono.just(BatchAnswerEvent.error(item.index(), question, e.getMessage()));
+                });
+    }
+
+    /**
+     * Steps shared by the blocking, streaming and batch paths: cache lookup,
+     * retrieval and context assembly. {@code questionEmbedding} is computed
+     * here when null; the answer cache and both retrieval legs share it.
+     */
+    private PreparedAnswer prepare(QuestionRequest request, long startTime, float[] questionEmbedding) {
+        // Only allocated when the caller asked for the breakdown
+        QuestionResponse.StageTimings timings = request.isIncludeTimings() ? new QuestionResponse.StageTimings() : null;
+
+        if (questionEmbedding == null) {
+            long embeddingStart = System.nanoTime();
+            questionEmbedding = embeddingService.generateEmbedding(request.getQuestion());
+            if (timings != null) {
+                timings.setQueryEmbeddingMs(Elapsed.millisSince(embeddingStart));
+            }
+        }
+
+        // Step 0: Semantic cache - reuse the answer to a near-identical question in the same scope
+        long cacheEpoch = answerCache.epoch();
+        if (answerCache.isEnabled()) {
+            Optional<QuestionResponse> cachedResponse = answerCache.lookup(
+                    questionEmbedding, VectorStorageService.SearchScope.of(request));
+
+            if (cachedResponse.isPresent()) {
+                return PreparedAnswer.immediate(cachedResponse.get().toBuilder()
+                        .cached(true)
+                        .processingTimeMs(System.currentTimeMillis() - startTime)
+                        .timings(timings)
+                        .build());
+            }
+        }
+
+        // Step 1: Retrieval - Find relevant chunks using semantic search
+        VectorStorageService.RetrievalResult retrieval = vectorStorageService.search(
+                request.getQuestion(),
+                VectorStorageService.SearchScope.of(request),
+                questionEmbedding);
+        List<VectorStorageService.RetrievedChunk> retrievedChunks = retrieval.chunks();
+        if (timings != null) {
+            timings.setVectorSearchMs(retrieval.vectorMillis());
+            timings.setLexicalSearchMs(retrieval.lexicalMillis());
+            timings.setRerankMs(retrieval.rerankMillis());
+            timings.setRetrievalMs(retrieval.totalMillis());
+        }
+
+        if (retrievedChunks.isEmpty()) {
+            log.warn("No relevant chunks found for question");
+            return PreparedAnswer.immediate(QuestionResponse.builder()
+                    .answer(NO_CHUNKS_ANSWER)
+                    .confidenceScore(0.0)
+                    .sources(List.of())
+                    .processingTimeMs(System.currentTimeMillis() - startTime)
+                    .cached(false)
+                    .timings(timings)
+                    .build());
+        }
+
+        // Step 2: Augmentation - Build context from retrieved chunks
+        long contextStart = System.nanoTime();
+        ContextAssembler.AssembledContext context = contextAssembler.assemble(retrievedChunks);
+        metrics.record(PipelineMetrics.CONTEXT_BUILD, contextStart, true);
+        if (timings != null) {
+            timings.setContextBuildMs(Elapsed.millisSince(contextStart));
         }
+
+        log.debug("Built context of ~{} tokens from {} of {} chunks",
+                context.tokens(), context.chunks().size(), retrievedChunks.size());
+
+        // Cite only the chunks the model is given
+        List<QuestionResponse.SourceCitation> sources = context.chunks().stream()
+                .map(chunk -> QuestionResponse.SourceCitation.builder()
+                        .documentName(chunk.getDocumentName())
+                        .pageNumber(chunk.getPageNumber())
+                        .relevantText(truncateText(chunk.getText(), 200))
+                        .similarityScore(chunk.getSimilarityScore())
+                        .build())
+                .collect(Collectors.toList());
+
+        return new PreparedAnswer(null, context.text(), sources, retrieval.confidence(),
+                answerCache.isEnabled() ? questionEmbedding : null, cacheEpoch, timings);
     }
 
     /**
-     * Build context from retrieved chunks
+     * Assemble the final response and offer it to the answer cache
      */
-    private String buildContext(List<VectorStorageService.RetrievedChunk> chunks) {
-        return chunks.stream()
-                .map(chunk -> String.format(
-                        "[Document: %s, Page: %d]\n%s\n",
-                        chunk.getDocumentName(),
-                        chunk.getPageNumber(),
-                        chunk.getText()))
-                .collect(Collectors.joining("\n---\n"));
+    private QuestionResponse complete(QuestionRequest request, PreparedAnswer prepared, String answer,
+                                      long startTime) {
+        long processingTime = System.currentTimeMillis() - startTime;
+
+        log.info("Question answered in {}ms with confidence {}", processingTime, prepared.confidenceScore());
+
+        QuestionResponse response = QuestionResponse.builder()
+                .answer(answer.isEmpty() ? "Unable to generate answer" : answer)
+                .confidenceScore(prepared.confidenceScore())
+                .sources(prepared.sources())
+                .processingTimeMs(processingTime)
+                .cached(false)
+                .build();
+
+        if (prepared.questionEmbedding() != null) {
+            answerCache.put(request.getQuestion(), prepared.questionEmbedding(),
+                    VectorStorageService.SearchScope.of(request), response, prepared.cacheEpoch());
+        }
+
+        // The cached copy stays without this request's timings
+        return prepared.timings() != null ? response.toBuilder().timings(prepared.timings()).build() : response;
     }
 
     /**
      * Generate answer using LLM
      */
-    private String generateAnswer(String question, String context) {
+    private String generateAnswer(String question, String context, QuestionResponse.StageTimings timings) {
+        ChatClient chatClient = chatClientBuilder.build();
+        Prompt prompt = buildPrompt(question, context);
+
+        long start = System.nanoTime();
+        ChatResponse response = metrics.time(PipelineMetrics.LLM,
+                () -> chatClient.prompt(prompt).call().chatResponse());
+        if (timings != null) {
+            timings.setLlmTotalMs(Elapsed.millisSince(start));
+        }
+
+        String answer = content(response);
+        recordTokens(prompt, answer, response != null ? usage(response) : null, timings);
+
+        return answer != null ? answer.trim() : "";
+    }
+
+    /**
+     * Stream answer tokens from the LLM as they are generated, appending them to {@code answer}
+     */
+    private Flux<String> streamGeneration(String question, String context, StringBuilder answer,
+                                          QuestionResponse.StageTimings timings) {
         ChatClient chatClient = chatClientBuilder.build();
+        Prompt prompt = buildPrompt(question, context);
+        long[] start = new long[1];
+        AtomicReference<Usage> usage = new AtomicReference<>();
+
+        return chatClient.prompt(prompt)
+                .stream()
+                .chatResponse()
+                .doOnSubscribe(subscription -> start[0] = System.nanoTime())
+                .doOnNext(response -> {
+                    Usage reported = usage(response);
+                    if (reported != null) {
+                        usage.set(reported);
+                    }
+                })
+                .mapNotNull(RagService::content)
+                .doOnNext(fragment -> {
+                    if (answer.isEmpty() && !fragment.isEmpty()) {
+                        metrics.record(PipelineMetrics.LLM_FIRST_TOKEN, start[0], true);
+                        if (timings != null) {
+                            timings.setLlmFirstTokenMs(Elapsed.millisSince(start[0]));
+                        }
+                    }
+                    answer.append(fragment);
+                })
+                .doOnComplete(() -> {
+                    metrics.record(PipelineMetrics.LLM, start[0], true);
+                    if (timings != null) {
+                        timings.setLlmTotalMs(Elapsed.millisSince(start[0]));
+                    }
+                    recordTokens(prompt, answer, usage.get(), timings);
+                })
+                .doOnError(e -> metrics.record(PipelineMetrics.LLM, start[0], false));
+    }
+
+    private static String content(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getContent();
+    }
+
+    /**
+     * Token usage reported by the model, or null when the response carries none
+     */
+    private static Usage usage(ChatResponse response) {
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage == null || usage.getTotalTokens() == null || usage.getTotalTokens() == 0) {
+            return null;
+        }
+        return usage;
+    }
 
+    /**
+     * Count tokens in and out, from the model's usage report or, when it sends
+     * none (streamed responses by default), with the local tokenizer
+     */
+    private void recordTokens(Prompt prompt, CharSequence answer, Usage usage,
+                              QuestionResponse.StageTimings timings) {
+        long promptTokens;
+        long completionTokens;
+        if (usage != null) {
+            promptTokens = orZero(usage.getPromptTokens());
+            completionTokens = orZero(usage.getGenerationTokens());
+        } else {
+            promptTokens = tokenCounter.count(prompt.getContents());
+            completionTokens = answer != null ? tokenCounter.count(answer, 0, answer.length()) : 0;
+        }
+        metrics.tokens(promptTokens, completionTokens);
+        if (timings != null) {
+            timings.setPromptTokens(promptTokens);
+            timings.setCompletionTokens(completionTokens);
+        }
+    }
+
+    private Prompt buildPrompt(String question, String context) {
         Map<String, Object> promptVariables = new HashMap<>();
         promptVariables.put("context", context);
         promptVariables.put("question", question);
 
         PromptTemplate promptTemplate = new PromptTemplate(RAG_PROMPT_TEMPLATE);
-        Prompt prompt = promptTemplate.create(promptVariables);
-
-        String response = chatClient.prompt(prompt)
-                .call()
-                .content();
+        return promptTemplate.create(promptVariables);
+    }
 
-        return response != null ? response.trim() : "Unable to generate answer";
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
     }
 
     /**
@@ -145,4 +461,33 @@ public class RagService {
         }
         return text.substring(0, maxLength) + "...";
     }
+
+    /**
+     * A batch question after retrieval, or the error that stopped it
+     */
+    private record BatchItem(int index, PreparedAnswer prepared, Throwable error) {
+    }
+
+    /**
+     * A batch generation, shared by the questions it answers, with its own LLM timings
+     */
+    private record Generation(String answer, QuestionResponse.StageTimings timings) {
+    }
+
+    /**
+     * Outcome of the retrieval phase; {@code immediate} is set when no LLM call is needed
+     */
+    private record PreparedAnswer(QuestionResponse immediate,
+                                  String context,
+                                  List<QuestionResponse.SourceCitation> sources,
+                                  double confidenceScore,
+                                  float[] questionEmbedding,
+                                  long cacheEpoch,
+                                  QuestionResponse.StageTimings timings) {
+
+        static PreparedAnswer immediate(QuestionResponse response) {
+            return new PreparedAnswer(response, null, response.getSources(), response.getConfidenceScore(),
+                    null, 0L, response.getTimings());
+        }
+    }
 }
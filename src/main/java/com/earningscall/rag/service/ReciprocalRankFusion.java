@@ -0,0 +1,45 @@
+package com.earningscall.rag.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion: each ranking contributes 1 / (k + rank) for every
+ * document it contains, so agreement between rankings outweighs a high
+ * position in just one. Scores need not be comparable across rankings.
+ */
+final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * Fuse rankings of documents identified by id. When a document appears in
+     * several rankings, the instance from the earliest ranking is kept.
+     */
+    static List<Fused> fuse(List<List<Document>> rankings, int k, int limit) {
+        Map<String, Fused> byId = new LinkedHashMap<>();
+
+        for (List<Document> ranking : rankings) {
+            for (int rank = 1; rank <= ranking.size(); rank++) {
+                Document document = ranking.get(rank - 1);
+                double contribution = 1.0 / (k + rank);
+                byId.merge(document.getId(), new Fused(document, contribution),
+                        (existing, added) -> new Fused(existing.document(), existing.score() + added.score()));
+            }
+        }
+
+        List<Fused> fused = new ArrayList<>(byId.values());
+        // Stable sort: ties keep first-seen order, i.e. the earlier ranking wins
+        fused.sort(Comparator.comparingDouble(Fused::score).reversed());
+        return fused.size() > limit ? fused.subList(0, limit) : fused;
+    }
+
+    record Fused(Document document, double score) {
+    }
+}
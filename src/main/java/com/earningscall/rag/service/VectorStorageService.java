@@ -1,31 +1,44 @@
 package com.earningscall.rag.service;
 
-import com.earningscall.rag.model.DocumentChunk;
-import com.earningscall.rag.repository.DocumentChunkRepository;
+import com.earningscall.rag.model.dto.QuestionRequest;
+import com.earningscall.rag.repository.ChunkTextSearchRepository;
+import com.earningscall.rag.repository.QueryEmbeddingSearch;
+import com.earningscall.rag.util.Elapsed;
+import com.earningscall.rag.util.PipelineMetrics;
 import com.earningscall.rag.util.TextChunker;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class VectorStorageService {
 
     private final VectorStore vectorStore;
-    private final DocumentChunkRepository chunkRepository;
+    private final ChunkTextSearchRepository textSearchRepository;
+    private final EmbeddingService embeddingService;
+    private final Executor retrievalExecutor;
+    private final PipelineMetrics metrics;
 
     @Value("${rag.retrieval.top-k:5}")
     private int topK;
@@ -33,83 +46,379 @@ public class VectorStorageService {
     @Value("${rag.retrieval.similarity-threshold:0.7}")
     private double similarityThreshold;
 
+    @Value("${rag.retrieval.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+
+    // Results fetched from each leg before fusion
+    @Value("${rag.retrieval.hybrid.candidates:20}")
+    private int hybridCandidates;
+
+    @Value("${rag.retrieval.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${rag.retrieval.rerank.enabled:true}")
+    private boolean rerankEnabled;
+
+    // Candidates reranked down to topK
+    @Value("${rag.retrieval.rerank.candidates:20}")
+    private int rerankCandidates;
+
+    @Value("${rag.retrieval.rerank.lambda:0.7}")
+    private double rerankLambda;
+
+    @Value("${rag.retrieval.rerank.duplicate-similarity:0.95}")
+    private double duplicateSimilarity;
+
+    @Value("${rag.retrieval.rerank.budget:PT0.0005S}")
+    private Duration rerankBudget;
+
+    @Value("${rag.retrieval.adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+
+    // A fall in similarity between neighbouring candidates larger than this ends the list
+    @Value("${rag.retrieval.adaptive.max-drop:0.05}")
+    private double adaptiveMaxDrop;
+
+    @Value("${rag.retrieval.adaptive.min-chunks:2}")
+    private int adaptiveMinChunks;
+
+    public VectorStorageService(VectorStore vectorStore,
+                                ChunkTextSearchRepository textSearchRepository,
+                                EmbeddingService embeddingService,
+                                @Qualifier("retrievalExecutor") Executor retrievalExecutor,
+                                PipelineMetrics metrics) {
+        this.vectorStore = vectorStore;
+        this.textSearchRepository = textSearchRepository;
+        this.embeddingService = embeddingService;
+        this.retrievalExecutor = retrievalExecutor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Embed chunks in multi-input batches ahead of {@link #storeChunks}, which
+     * hands each chunk's embedding to the vector store with it, so the store
+     * does not embed the chunk again
+     */
+    public void embedChunks(List<TextChunker.TextChunk> chunks) {
+        List<float[]> embeddings = embeddingService.generateEmbeddingsBatch(
+                chunks.stream().map(TextChunker.TextChunk::getText).toList());
+        for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).setEmbedding(embeddings.get(i));
+        }
+    }
+
     /**
-     * Store document chunks with their embeddings
+     * Store document chunks with their embeddings. The document's company and
+     * fiscal period are copied onto every chunk so searches can filter on them.
+     *
+     * @return vector store ids of the stored chunks
      */
     @Transactional
-    public void storeChunks(UUID documentId, String documentName, List<TextChunker.TextChunk> chunks) {
-        log.info("Storing {} chunks for document {}", chunks.size(), documentId);
+    public List<String> storeChunks(ChunkSource source, List<TextChunker.TextChunk> chunks) {
+        log.info("Storing {} chunks for document {}", chunks.size(), source.documentId());
 
         // Convert chunks to Spring AI Documents and store in vector database
         List<Document> documents = chunks.stream()
                 .map(chunk -> {
                     Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
-                    metadata.put("documentId", documentId.toString());
-                    metadata.put("documentName", documentName);
+                    metadata.put("documentId", source.documentId().toString());
+                    metadata.put("documentName", source.documentName());
                     metadata.put("chunkIndex", chunk.getChunkIndex());
                     metadata.put("pageNumber", chunk.getPageNumber());
+                    if (source.companyName() != null) {
+                        metadata.put("companyName", source.companyName());
+                    }
+                    if (source.fiscalYear() != null) {
+                        metadata.put("fiscalYear", source.fiscalYear());
+                    }
+                    if (source.fiscalQuarter() != null) {
+                        metadata.put("fiscalQuarter", source.fiscalQuarter());
+                    }
 
-                    return new Document(
+                    Document document = new Document(
                             UUID.randomUUID().toString(),
                             chunk.getText(),
                             metadata);
+                    if (chunk.getEmbedding() != null) {
+                        document.setEmbedding(chunk.getEmbedding());
+                    }
+                    return document;
                 })
                 .collect(Collectors.toList());
 
-        // Store in pgvector using Spring AI's VectorStore
-        vectorStore.add(documents);
-
-        // Also save chunks to our JPA repository for reference
-        List<DocumentChunk> documentChunks = chunks.stream()
-                .map(chunk -> DocumentChunk.builder()
-                        .documentId(documentId)
-                        .chunkText(chunk.getText())
-                        .chunkIndex(chunk.getChunkIndex())
-                        .pageNumber(chunk.getPageNumber())
-                        .metadata(chunk.getMetadata())
-                        .build())
-                .collect(Collectors.toList());
-
-        chunkRepository.saveAll(documentChunks);
+        // Text, metadata and embedding are written once, to document_chunks
+        metrics.items(PipelineMetrics.VECTOR_INSERT, documents.size());
+        metrics.time(PipelineMetrics.VECTOR_INSERT, () -> vectorStore.add(documents));
 
         log.info("Successfully stored {} chunks", chunks.size());
+
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    /**
+     * Remove stored chunks of a document, e.g. after a failed ingestion
+     */
+    public void deleteChunks(UUID documentId, List<String> vectorIds) {
+        vectorStore.delete(vectorIds);
+        log.info("Deleted {} chunks for document {}", vectorIds.size(), documentId);
     }
 
     /**
      * Perform semantic similarity search
      */
-    public List<RetrievedChunk> searchSimilarChunks(String query, UUID documentId, String companyName) {
+    public List<RetrievedChunk> searchSimilarChunks(String query, SearchScope scope) {
+        return search(query, scope, null).chunks();
+    }
+
+    /**
+     * Hybrid retrieval: the vector query and a full-text query run
+     * concurrently and their rankings are merged with reciprocal rank fusion.
+     * With hybrid search disabled this is a plain vector search. Both legs
+     * are restricted to the scope's document, company and fiscal period; the
+     * vector leg also to chunks at least similarity-threshold similar to the
+     * query, while term matches are kept however they score. Candidates past
+     * the first sharp drop in similarity are cut ({@link AdaptiveTopK}). With reranking on, more candidates are fetched
+     * and cut down to topK by maximal marginal relevance.
+     *
+     * @param queryEmbedding the query's embedding if the caller has it, else
+     *                       it is computed here once and used by both legs
+     */
+    public RetrievalResult search(String query, SearchScope scope, float[] queryEmbedding) {
         log.info("Searching for chunks similar to query: {}", query);
+        if (queryEmbedding == null && vectorStore instanceof QueryEmbeddingSearch) {
+            queryEmbedding = embeddingService.generateEmbedding(query);
+        }
+        float[] embedding = queryEmbedding;
+        long start = System.nanoTime();
+        Filter.Expression filter = scope.toFilterExpression();
+        int shortlist = rerankEnabled ? Math.max(topK, rerankCandidates) : topK;
 
-        // Build search request
-        SearchRequest.Builder requestBuilder = SearchRequest.defaults()
-                .withTopK(topK)
-                .withSimilarityThreshold(similarityThreshold);
+        if (!hybridEnabled) {
+            List<Document> results = vectorSearch(query, embedding, filter, shortlist);
+            double vectorMillis = Elapsed.millisSince(start);
+
+            long rerankStart = System.nanoTime();
+            List<MaximalMarginalRelevance.Ranked> candidates = byRelevance(results);
+            Shortlist cut = cutAtDrop(candidates);
+            List<MaximalMarginalRelevance.Ranked> ranked = rerankEnabled ? rerank(cut.candidates()) : cut.candidates();
+            Double rerankMillis = rerankEnabled ? Elapsed.millisSince(rerankStart) : null;
+
+            List<RetrievedChunk> chunks = ranked.stream()
+                    .map(candidate -> toRetrievedChunk(candidate.document(), null))
+                    .toList();
+            double totalMillis = Elapsed.millisSince(start);
+            log.info("Found {} similar chunks ({} candidates) in {}ms", chunks.size(), results.size(), totalMillis);
+            return new RetrievalResult(chunks, vectorMillis, null, rerankMillis, totalMillis, cut.confidence());
+        }
 
-        // Add filter expressions if provided
-        if (documentId != null) {
-            requestBuilder.withFilterExpression(
-                    String.format("documentId == '%s'", documentId.toString()));
+        int candidates = Math.max(shortlist, hybridCandidates);
+
+        // Lexical leg on the retrieval pool, vector leg on this thread
+        double[] lexicalMillis = new double[1];
+        CompletableFuture<List<Document>> lexicalLeg = CompletableFuture.supplyAsync(() -> {
+            long legStart = System.nanoTime();
+            try {
+                return metrics.time(PipelineMetrics.TEXT_SEARCH, () -> textSearchRepository.search(
+                        query, embedding, filter, candidates));
+            } finally {
+                lexicalMillis[0] = Elapsed.millisSince(legStart);
+            }
+        }, retrievalExecutor);
+
+        List<Document> vectorResults;
+        try {
+            vectorResults = vectorSearch(query, embedding, filter, candidates);
+        } catch (RuntimeException e) {
+            lexicalLeg.cancel(false);
+            throw e;
+        }
+        double vectorMillis = Elapsed.millisSince(start);
+
+        List<Document> lexicalResults;
+        try {
+            lexicalResults = lexicalLeg.join();
+        } catch (CompletionException e) {
+            log.warn("Full-text search failed, using vector results only", e.getCause());
+            lexicalResults = List.of();
         }
 
-        List<Document> results = vectorStore.similaritySearch(requestBuilder.build().withQuery(query));
-
-        log.info("Found {} similar chunks", results.size());
-
-        // Convert to RetrievedChunk with metadata
-        return results.stream()
-                .map(doc -> {
-                    Map<String, Object> metadata = doc.getMetadata();
-                    return RetrievedChunk.builder()
-                            .text(doc.getContent())
-                            .documentId(UUID.fromString((String) metadata.get("documentId")))
-                            .documentName((String) metadata.get("documentName"))
-                            .pageNumber((Integer) metadata.get("pageNumber"))
-                            .chunkIndex((Integer) metadata.get("chunkIndex"))
-                            .similarityScore((Double) metadata.getOrDefault("distance", 0.0))
-                            .build();
+        long rerankStart = System.nanoTime();
+        List<MaximalMarginalRelevance.Ranked> fused =
+                ReciprocalRankFusion.fuse(List.of(vectorResults, lexicalResults), rrfK, shortlist)
+                        .stream()
+                        .map(result -> new MaximalMarginalRelevance.Ranked(result.document(), result.score()))
+                        .toList();
+        Shortlist cut = cutAtDrop(fused);
+        List<MaximalMarginalRelevance.Ranked> ranked = rerankEnabled ? rerank(cut.candidates()) : cut.candidates();
+        List<RetrievedChunk> chunks = ranked.stream()
+                .map(candidate -> toRetrievedChunk(candidate.document(), candidate.relevance()))
+                .toList();
+        double rerankMillis = Elapsed.millisSince(rerankStart);
+
+        double totalMillis = Elapsed.millisSince(start);
+        log.info("Hybrid search found {} chunks ({} vector, {} lexical) in {}ms: vector leg {}ms, lexical leg {}ms",
+                chunks.size(), vectorResults.size(), lexicalResults.size(), totalMillis, vectorMillis,
+                lexicalMillis[0]);
+
+        return new RetrievalResult(chunks, vectorMillis, lexicalMillis[0], rerankMillis, totalMillis,
+                cut.confidence());
+    }
+
+    /**
+     * Vector results with their similarity as relevance. A store that reports
+     * no distance is taken in its own rank order, scored as rank fusion scores
+     * a single ranking.
+     */
+    private List<MaximalMarginalRelevance.Ranked> byRelevance(List<Document> results) {
+        if (results.stream().allMatch(doc -> similarityOrNull(doc) != null)) {
+            return results.stream()
+                    .map(doc -> new MaximalMarginalRelevance.Ranked(doc, similarityOrNull(doc)))
+                    .toList();
+        }
+        log.debug("Vector store returned results without a distance, ranking them by position");
+        return ReciprocalRankFusion.fuse(List.of(results), rrfK, results.size()).stream()
+                .map(result -> new MaximalMarginalRelevance.Ranked(result.document(), result.score()))
+                .toList();
+    }
+
+    /**
+     * Drop candidates below the first sharp fall in similarity, keeping their
+     * order. Only similarities the vector leg could have returned take part:
+     * full-text matches that are unscored or below similarity-threshold stay,
+     * ranked by fusion, or the cut would drop the exact-term hits the
+     * full-text leg is there to add.
+     */
+    private Shortlist cutAtDrop(List<MaximalMarginalRelevance.Ranked> candidates) {
+        double[] similarities = candidates.stream()
+                .map(candidate -> cutSimilarityOrNull(candidate.document()))
+                .filter(Objects::nonNull)
+                // Best first
+                .mapToDouble(similarity -> -similarity)
+                .sorted()
+                .map(similarity -> -similarity)
+                .toArray();
+        double maxDrop = adaptiveEnabled ? adaptiveMaxDrop : Double.POSITIVE_INFINITY;
+        AdaptiveTopK.Cut cut = AdaptiveTopK.cut(similarities, adaptiveMinChunks, maxDrop, similarityThreshold);
+        if (cut.keep() == similarities.length) {
+            return new Shortlist(candidates, cut.confidence());
+        }
+
+        double lowest = similarities[cut.keep() - 1];
+        log.debug("Similarity drops after {}, keeping {} of {} scored candidates",
+                lowest, cut.keep(), similarities.length);
+        List<MaximalMarginalRelevance.Ranked> kept = candidates.stream()
+                .filter(candidate -> {
+                    Double similarity = cutSimilarityOrNull(candidate.document());
+                    return similarity == null || similarity >= lowest;
                 })
-                .collect(Collectors.toList());
+                .toList();
+        return new Shortlist(kept, cut.confidence());
+    }
+
+    private List<MaximalMarginalRelevance.Ranked> rerank(List<MaximalMarginalRelevance.Ranked> candidates) {
+        metrics.items(PipelineMetrics.RERANK, candidates.size());
+        return metrics.time(PipelineMetrics.RERANK, () -> MaximalMarginalRelevance.select(
+                candidates, topK, rerankLambda, duplicateSimilarity, rerankBudget.toNanos()));
+    }
+
+    /**
+     * @param queryEmbedding null when the store embeds the query itself
+     */
+    private List<Document> vectorSearch(String query, float[] queryEmbedding, Filter.Expression filter, int limit) {
+        SearchRequest request = SearchRequest.query(query)
+                .withTopK(limit)
+                .withSimilarityThreshold(similarityThreshold);
+        if (filter != null) {
+            request.withFilterExpression(filter);
+        }
+
+        List<Document> results = metrics.time(PipelineMetrics.VECTOR_SEARCH,
+                () -> queryEmbedding != null && vectorStore instanceof QueryEmbeddingSearch store
+                        ? store.similaritySearch(request, queryEmbedding)
+                        : vectorStore.similaritySearch(request));
+        metrics.items(PipelineMetrics.VECTOR_SEARCH, results.size());
+        return results;
+    }
+
+    private static RetrievedChunk toRetrievedChunk(Document doc, Double fusedScore) {
+        Map<String, Object> metadata = doc.getMetadata();
+        return RetrievedChunk.builder()
+                .text(doc.getContent())
+                .documentId(UUID.fromString((String) metadata.get("documentId")))
+                .documentName((String) metadata.get("documentName"))
+                .pageNumber((Integer) metadata.get("pageNumber"))
+                .chunkIndex((Integer) metadata.get("chunkIndex"))
+                .similarityScore(similarityOrNull(doc))
+                .fusedScore(fusedScore)
+                .build();
+    }
+
+    /**
+     * Cosine similarity to the query, from the cosine distance the search
+     * returned; null for full-text matches that were not scored
+     */
+    private static Double similarityOrNull(Document doc) {
+        Object distance = doc.getMetadata().get("distance");
+        return distance instanceof Number number ? 1.0 - number.doubleValue() : null;
+    }
+
+    private Double cutSimilarityOrNull(Document doc) {
+        Double similarity = similarityOrNull(doc);
+        return similarity != null && similarity >= similarityThreshold ? similarity : null;
+    }
+
+    /**
+     * Document-level attributes stored with each of its chunks
+     */
+    public record ChunkSource(UUID documentId, String documentName, String companyName,
+                              Integer fiscalYear, Integer fiscalQuarter) {
+    }
+
+    /**
+     * Optional restrictions on which chunks a search may return; null fields do not restrict
+     */
+    public record SearchScope(UUID documentId, String companyName, Integer fiscalYear, Integer fiscalQuarter) {
+
+        public static SearchScope of(QuestionRequest request) {
+            return new SearchScope(request.getDocumentId(), request.getCompanyName(),
+                    request.getFiscalYear(), request.getFiscalQuarter());
+        }
+
+        /**
+         * The scope as a conjunction of equality filters, or null when unrestricted
+         */
+        public Filter.Expression toFilterExpression() {
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+            List<FilterExpressionBuilder.Op> conditions = new ArrayList<>(4);
+            if (documentId != null) {
+                conditions.add(b.eq("documentId", documentId.toString()));
+            }
+            if (companyName != null && !companyName.isBlank()) {
+                conditions.add(b.eq("companyName", companyName));
+            }
+            if (fiscalYear != null) {
+                conditions.add(b.eq("fiscalYear", fiscalYear));
+            }
+            if (fiscalQuarter != null) {
+                conditions.add(b.eq("fiscalQuarter", fiscalQuarter));
+            }
+            return conditions.stream().reduce(b::and).map(FilterExpressionBuilder.Op::build).orElse(null);
+        }
+    }
+
+    /**
+     * Retrieved chunks with per-leg timings. lexicalMillis is null when hybrid
+     * search is off; rerankMillis covers rank fusion and reranking and is null
+     * when neither ran. confidence is from {@link AdaptiveTopK}.
+     */
+    public record RetrievalResult(List<RetrievedChunk> chunks, double vectorMillis, Double lexicalMillis,
+                                  Double rerankMillis, double totalMillis, double confidence) {
+    }
+
+    /**
+     * Candidates left after the adaptive cut, and the confidence it gave
+     */
+    private record Shortlist(List<MaximalMarginalRelevance.Ranked> candidates, double confidence) {
     }
 
     @Data
@@ -120,6 +429,9 @@ public class VectorStorageService {
         private String documentName;
         private Integer pageNumber;
         private Integer chunkIndex;
+        // Cosine similarity to the question, higher is closer; null for unscored full-text matches
         private Double similarityScore;
+        // Reciprocal rank fusion score; null without hybrid search
+        private Double fusedScore;
     }
 }
@@ -0,0 +1,22 @@
+package com.earningscall.rag.util;
+
+import java.util.Locale;
+
+/**
+ * Normalized company name used wherever results are scoped by company, so
+ * "Acme Corp" and " acme corp" select the same chunks and cached answers
+ */
+public final class CompanyKey {
+
+    private CompanyKey() {
+    }
+
+    /**
+     * @return the trimmed, lower-cased name, or null for a missing or blank name
+     */
+    public static String of(String companyName) {
+        return companyName == null || companyName.isBlank()
+                ? null
+                : companyName.trim().toLowerCase(Locale.ROOT);
+    }
+}
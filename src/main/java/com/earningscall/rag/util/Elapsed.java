@@ -0,0 +1,19 @@
+package com.earningscall.rag.util;
+
+/**
+ * Elapsed time for the per-request stage breakdown, kept to the microsecond
+ * so sub-millisecond stages do not read as 0
+ */
+public final class Elapsed {
+
+    private Elapsed() {
+    }
+
+    /**
+     * @return milliseconds since {@code startNanos}, a {@link System#nanoTime()}
+     * reading, rounded to the microsecond
+     */
+    public static double millisSince(long startNanos) {
+        return Math.round((System.nanoTime() - startNanos) / 1_000.0) / 1_000.0;
+    }
+}
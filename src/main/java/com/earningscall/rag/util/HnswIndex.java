@@ -0,0 +1,820 @@
+package com.earningscall.rag.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest-neighbour
+ * search by cosine distance.
+ * <p>
+ * Vectors are normalized on insert and kept off-heap in fixed-size segments;
+ * after {@link #load} the segments of the snapshot are memory-mapped straight
+ * from the file. Nodes are identified by their insertion ordinal. Removal only
+ * tombstones a node: it stays in the graph for navigation but is never
+ * returned. Searches run concurrently; inserts take an exclusive lock.
+ * <p>
+ * In quantized mode each vector also gets an int8 code (one scale per
+ * vector). Searches walk the graph on the codes, a quarter of the bytes of
+ * the float vectors, and rescore the candidates with the float vectors
+ * before picking the top k. The graph itself is always built on floats.
+ */
+public class HnswIndex {
+
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_VECTORS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_VECTORS - 1;
+
+    private static final long MAGIC = 0x5241474857534e31L; // "RAGHWSN1"
+    private static final int HEADER_BYTES = 64;
+    private static final ByteOrder VECTOR_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final boolean quantized;
+    private final double levelMultiplier;
+
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    // int8 codes and per-vector scales; only used in quantized mode
+    private final List<ByteBuffer> codeSegments = new ArrayList<>();
+    private float[] scales = new float[0];
+    // node -> level -> [count, neighbour...]
+    private final List<int[][]> graph = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ThreadLocal<SearchContext> context;
+
+    private int size = 0;
+    private int liveCount = 0;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param m              neighbours per node on upper layers (twice that on layer 0)
+     * @param efConstruction candidate list size while inserting
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this(dimensions, m, efConstruction, false);
+    }
+
+    /**
+     * @param quantized search on int8 codes and rescore with the float vectors
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, boolean quantized) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.quantized = quantized;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.context = ThreadLocal.withInitial(() -> new SearchContext(dimensions));
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * Number of nodes ever inserted, including removed ones
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of nodes that can be returned by a search
+     */
+    public int liveCount() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert a vector and link it into the graph
+     *
+     * @return the new node's ordinal
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            storeVector(node, normalized);
+
+            int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            int[][] links = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[(l == 0 ? maxM0 : m) + 1];
+            }
+            graph.add(links);
+            size++;
+            liveCount++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            NodeDistance exact = other -> distance(normalized, other);
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(exact, current, l);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> nearest = searchLayer(exact, current, efConstruction, l, null);
+                int maxLinks = l == 0 ? maxM0 : m;
+
+                List<Candidate> selected = selectNeighbours(nearest, maxLinks);
+                for (Candidate neighbour : selected) {
+                    addLink(node, neighbour.node(), l);
+                    addLink(neighbour.node(), node, l);
+                }
+                current = nearest.get(0).node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstone a node so searches skip it
+     */
+    public void remove(int node) {
+        lock.writeLock().lock();
+        try {
+            if (node < size && !deleted.get(node)) {
+                deleted.set(node);
+                liveCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isRemoved(int node) {
+        lock.readLock().lock();
+        try {
+            return deleted.get(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Share of inserted nodes that are tombstones; searches still walk through them
+     */
+    public double removedFraction() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0.0 : (double) (size - liveCount) / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A new index with the same parameters holding only the live nodes, in
+     * ordinal order, so no search walks through tombstones. This index is not
+     * changed and stays searchable while the new one is built.
+     */
+    public Compaction compact() {
+        lock.readLock().lock();
+        try {
+            HnswIndex compacted = new HnswIndex(dimensions, m, efConstruction, quantized);
+            int[] ordinals = new int[size];
+            float[] vector = new float[dimensions];
+            for (int node = 0; node < size; node++) {
+                if (deleted.get(node)) {
+                    ordinals[node] = -1;
+                } else {
+                    loadVector(node, vector);
+                    ordinals[node] = compacted.add(vector);
+                }
+            }
+            return new Compaction(compacted, ordinals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A copy of the node's stored vector, normalized to unit length
+     */
+    public float[] vector(int node) {
+        lock.readLock().lock();
+        try {
+            float[] vector = new float[dimensions];
+            loadVector(node, vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate k nearest live nodes accepted by the filter, closest first.
+     * In quantized mode all ef candidates are rescored with their float
+     * vectors, so the returned distances are exact.
+     *
+     * @param filter accepts node ordinals; null accepts every node
+     */
+    public List<Result> search(float[] query, int k, int ef, IntPredicate filter) {
+        float[] normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+
+            NodeDistance distance;
+            if (quantized) {
+                byte[] queryCodes = new byte[dimensions];
+                float queryScale = quantize(normalized, queryCodes);
+                distance = node -> quantizedDistance(queryCodes, queryScale, node);
+            } else {
+                distance = node -> distance(normalized, node);
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(distance, current, l);
+            }
+
+            IntPredicate accept = filter == null
+                    ? node -> !deleted.get(node)
+                    : node -> !deleted.get(node) && filter.test(node);
+
+            List<Candidate> found = searchLayer(distance, current, Math.max(ef, k), 0, accept);
+            if (quantized) {
+                found = rescore(normalized, found);
+            }
+
+            List<Result> results = new ArrayList<>(Math.min(k, found.size()));
+            for (int i = 0; i < found.size() && i < k; i++) {
+                results.add(new Result(found.get(i).node(), found.get(i).distance()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact k nearest among the given nodes; cheaper than a graph search for small subsets
+     */
+    public List<Result> exactSearch(float[] query, int k, int[] nodes, int count) {
+        float[] normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> worstFirst = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+            for (int i = 0; i < count; i++) {
+                int node = nodes[i];
+                if (node >= size || deleted.get(node)) {
+                    continue;
+                }
+                float distance = distance(normalized, node);
+                if (worstFirst.size() < k) {
+                    worstFirst.add(new Candidate(node, distance));
+                } else if (distance < worstFirst.peek().distance()) {
+                    worstFirst.poll();
+                    worstFirst.add(new Candidate(node, distance));
+                }
+            }
+            return toResults(worstFirst);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact k nearest live nodes by scanning every vector
+     */
+    public List<Result> bruteForceSearch(float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return exactSearch(query, k, all, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index to a file: a header, the vectors as one contiguous region
+     * that {@link #load} maps, then the graph and tombstones. The file is
+     * written next to the target and moved into place.
+     */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(liveCount);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            out.writeInt(quantized ? 1 : 0);
+            out.write(new byte[HEADER_BYTES - 40]);
+
+            // Vectors in the same byte order as the in-memory segments, so they can be mapped as-is
+            ByteBuffer vectorBytes = ByteBuffer.allocate(dimensions * Float.BYTES).order(VECTOR_ORDER);
+            float[] vector = new float[dimensions];
+            for (int node = 0; node < size; node++) {
+                loadVector(node, vector);
+                vectorBytes.asFloatBuffer().put(vector);
+                out.write(vectorBytes.array());
+            }
+
+            for (int node = 0; node < size; node++) {
+                int[][] links = graph.get(node);
+                out.writeByte(links.length);
+                for (int[] level : links) {
+                    out.writeShort(level[0]);
+                    for (int i = 1; i <= level[0]; i++) {
+                        out.writeInt(level[i]);
+                    }
+                }
+            }
+
+            long[] tombstones = deleted.toLongArray();
+            out.writeInt(tombstones.length);
+            for (long word : tombstones) {
+                out.writeLong(word);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Open a snapshot written by {@link #save}. Full vector segments stay
+     * memory-mapped from the file; only the graph is read onto the heap.
+     */
+    public static HnswIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong() != MAGIC) {
+                throw new IOException("Not an HNSW snapshot: " + file);
+            }
+            int dimensions = header.getInt();
+            int m = header.getInt();
+            int efConstruction = header.getInt();
+            int size = header.getInt();
+            int liveCount = header.getInt();
+            int entryPoint = header.getInt();
+            int maxLevel = header.getInt();
+            boolean quantized = header.getInt() == 1;
+            HnswIndex index = new HnswIndex(dimensions, m, efConstruction, quantized);
+
+            long segmentBytes = (long) SEGMENT_VECTORS * index.dimensions * Float.BYTES;
+            long offset = HEADER_BYTES;
+            int fullSegments = size >>> SEGMENT_SHIFT;
+            for (int s = 0; s < fullSegments; s++) {
+                // The mapping stays valid after the channel is closed
+                index.segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, segmentBytes)
+                        .order(VECTOR_ORDER)
+                        .asFloatBuffer());
+                offset += segmentBytes;
+            }
+
+            int remainder = size & SEGMENT_MASK;
+            if (remainder > 0) {
+                // The tail segment must accept new inserts, so copy it off-heap
+                FloatBuffer tail = index.allocateSegment();
+                FloatBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                                (long) remainder * index.dimensions * Float.BYTES)
+                        .order(VECTOR_ORDER)
+                        .asFloatBuffer();
+                tail.put(0, mapped, 0, mapped.remaining());
+                index.segments.add(tail);
+                offset += (long) remainder * index.dimensions * Float.BYTES;
+            }
+
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            for (int node = 0; node < size; node++) {
+                int levels = in.readUnsignedByte();
+                int[][] links = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int count = in.readUnsignedShort();
+                    links[l] = new int[(l == 0 ? index.maxM0 : index.m) + 1];
+                    links[l][0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        links[l][i] = in.readInt();
+                    }
+                }
+                index.graph.add(links);
+            }
+
+            long[] tombstones = new long[in.readInt()];
+            for (int i = 0; i < tombstones.length; i++) {
+                tombstones[i] = in.readLong();
+            }
+            index.deleted.or(BitSet.valueOf(tombstones));
+
+            if (quantized) {
+                // Codes are derived data: rebuilt here rather than stored
+                float[] vector = new float[dimensions];
+                for (int node = 0; node < size; node++) {
+                    index.loadVector(node, vector);
+                    index.storeCodes(node, vector);
+                }
+            }
+
+            index.size = size;
+            index.liveCount = liveCount;
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+            return index;
+        }
+    }
+
+    private void storeVector(int node, float[] vector) {
+        int segmentIndex = node >>> SEGMENT_SHIFT;
+        if (segmentIndex == segments.size()) {
+            segments.add(allocateSegment());
+        }
+        segments.get(segmentIndex).put((node & SEGMENT_MASK) * dimensions, vector);
+        if (quantized) {
+            storeCodes(node, vector);
+        }
+    }
+
+    private void storeCodes(int node, float[] vector) {
+        int segmentIndex = node >>> SEGMENT_SHIFT;
+        if (segmentIndex == codeSegments.size()) {
+            codeSegments.add(ByteBuffer.allocateDirect(SEGMENT_VECTORS * dimensions));
+        }
+        if (node >= scales.length) {
+            scales = Arrays.copyOf(scales, Math.max(SEGMENT_VECTORS, scales.length * 2));
+        }
+        byte[] codes = context.get().codes;
+        scales[node] = quantize(vector, codes);
+        codeSegments.get(segmentIndex).put((node & SEGMENT_MASK) * dimensions, codes);
+    }
+
+    /**
+     * Symmetric scalar quantization: component / scale rounded into [-127, 127]
+     *
+     * @return the scale
+     */
+    static float quantize(float[] vector, byte[] codes) {
+        float maxAbs = 0f;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+        for (int d = 0; d < vector.length; d++) {
+            codes[d] = (byte) Math.round(vector[d] / scale);
+        }
+        return scale;
+    }
+
+    private FloatBuffer allocateSegment() {
+        return ByteBuffer.allocateDirect(SEGMENT_VECTORS * dimensions * Float.BYTES)
+                .order(VECTOR_ORDER)
+                .asFloatBuffer();
+    }
+
+    private float distance(float[] query, int node) {
+        float[] vector = context.get().first;
+        loadVector(node, vector);
+        return 1f - dot(query, vector);
+    }
+
+    private float distance(int a, int b) {
+        SearchContext scratch = context.get();
+        loadVector(a, scratch.first);
+        loadVector(b, scratch.second);
+        return 1f - dot(scratch.first, scratch.second);
+    }
+
+    private float quantizedDistance(byte[] queryCodes, float queryScale, int node) {
+        byte[] codes = context.get().codes;
+        codeSegments.get(node >>> SEGMENT_SHIFT).get((node & SEGMENT_MASK) * dimensions, codes);
+        return 1f - queryScale * scales[node] * dot(queryCodes, codes);
+    }
+
+    /**
+     * Bulk-copy a vector out of its segment; the plain array loop that follows
+     * is far cheaper than element-wise buffer reads
+     */
+    private void loadVector(int node, float[] target) {
+        segments.get(node >>> SEGMENT_SHIFT).get((node & SEGMENT_MASK) * dimensions, target);
+    }
+
+    /**
+     * Dot product with four independent accumulators, so the additions are
+     * not serialized on a single register
+     */
+    public static float dot(float[] a, float[] b) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int d = 0;
+        for (int end = a.length - 3; d < end; d += 4) {
+            s0 += a[d] * b[d];
+            s1 += a[d + 1] * b[d + 1];
+            s2 += a[d + 2] * b[d + 2];
+            s3 += a[d + 3] * b[d + 3];
+        }
+        for (; d < a.length; d++) {
+            s0 += a[d] * b[d];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Integer dot product of two code arrays; the JIT vectorizes this loop
+     */
+    static int dot(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            sum += a[d] * b[d];
+        }
+        return sum;
+    }
+
+    private int greedyClosest(NodeDistance distance, int start, int level) {
+        int current = start;
+        float currentDistance = distance.to(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = graph.get(current)[level];
+            for (int i = 1; i <= links[0]; i++) {
+                float d = distance.to(links[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = links[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. Only nodes passing 'accept' (all nodes
+     * when null) enter the result set, but every node is used for navigation.
+     *
+     * @return up to ef accepted nodes, closest first
+     */
+    private List<Candidate> searchLayer(NodeDistance distance, int entry, int ef, int level, IntPredicate accept) {
+        SearchContext seen = context.get();
+        seen.reset(size);
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+
+        Candidate start = new Candidate(entry, distance.to(entry));
+        seen.mark(entry);
+        candidates.add(start);
+        if (accept == null || accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+
+            int[] links = graph.get(closest.node())[level];
+            for (int i = 1; i <= links[0]; i++) {
+                int neighbour = links[i];
+                if (!seen.mark(neighbour)) {
+                    continue;
+                }
+                float d = distance.to(neighbour);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate next = new Candidate(neighbour, d);
+                    candidates.add(next);
+                    if (accept == null || accept.test(neighbour)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        return toCandidates(results);
+    }
+
+    private List<Candidate> rescore(float[] query, List<Candidate> candidates) {
+        List<Candidate> rescored = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            rescored.add(new Candidate(candidate.node(), distance(query, candidate.node())));
+        }
+        rescored.sort(Comparator.comparingDouble(Candidate::distance));
+        return rescored;
+    }
+
+    /**
+     * Neighbour selection heuristic: keep a candidate only if it is closer to
+     * the base node than to every neighbour already kept, which spreads links
+     * across directions; top up with the closest skipped candidates.
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> closestFirst, int maxLinks) {
+        List<Candidate> selected = new ArrayList<>(maxLinks);
+        List<Candidate> skipped = new ArrayList<>();
+
+        for (Candidate candidate : closestFirst) {
+            if (selected.size() >= maxLinks) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (distance(candidate.node(), kept.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+
+        for (int i = 0; i < skipped.size() && selected.size() < maxLinks; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void addLink(int from, int to, int level) {
+        int[] links = graph.get(from)[level];
+        int maxLinks = links.length - 1;
+
+        if (links[0] < maxLinks) {
+            links[++links[0]] = to;
+            return;
+        }
+
+        // Full: re-select among the existing links plus the new one
+        List<Candidate> candidates = new ArrayList<>(maxLinks + 1);
+        for (int i = 1; i <= links[0]; i++) {
+            candidates.add(new Candidate(links[i], distance(from, links[i])));
+        }
+        candidates.add(new Candidate(to, distance(from, to)));
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+
+        List<Candidate> kept = selectNeighbours(candidates, maxLinks);
+        links[0] = kept.size();
+        for (int i = 0; i < kept.size(); i++) {
+            links[i + 1] = kept.get(i).node();
+        }
+    }
+
+    private static List<Candidate> toCandidates(PriorityQueue<Candidate> worstFirst) {
+        Candidate[] sorted = new Candidate[worstFirst.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = worstFirst.poll();
+        }
+        return List.of(sorted);
+    }
+
+    private static List<Result> toResults(PriorityQueue<Candidate> worstFirst) {
+        List<Result> results = new ArrayList<>(worstFirst.size());
+        for (Candidate candidate : toCandidates(worstFirst)) {
+            results.add(new Result(candidate.node(), candidate.distance()));
+        }
+        return results;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                    "Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0.0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private record Candidate(int node, float distance) {
+    }
+
+    private interface NodeDistance {
+        float to(int node);
+    }
+
+    /**
+     * A search hit: node ordinal and cosine distance
+     */
+    public record Result(int node, float distance) {
+    }
+
+    /**
+     * A compacted index and each old node's ordinal in it, -1 for removed nodes
+     */
+    public record Compaction(HnswIndex index, int[] ordinals) {
+    }
+
+    /**
+     * Per-thread scratch space: a generation-stamped visited set and vector
+     * and code buffers, reused across searches
+     */
+    private static final class SearchContext {
+
+        private final float[] first;
+        private final float[] second;
+        private final byte[] codes;
+        private int[] marks = new int[0];
+        private int generation = 0;
+
+        SearchContext(int dimensions) {
+            first = new float[dimensions];
+            second = new float[dimensions];
+            codes = new byte[dimensions];
+        }
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return true if the node was not visited yet
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
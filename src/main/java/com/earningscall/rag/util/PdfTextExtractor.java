@@ -1,51 +1,195 @@
 package com.earningscall.rag.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 public class PdfTextExtractor {
 
+    private final Executor extractionExecutor;
+    private final PipelineMetrics metrics;
+
+    @Value("${rag.pdf.extraction.pages-per-task:16}")
+    private int pagesPerTask;
+
+    @Value("${rag.pdf.extraction.max-ranges-in-flight:8}")
+    private int maxRangesInFlight;
+
+    // Keep PDFBox's stream buffers in temp files instead of on-heap
+    @Value("${rag.pdf.extraction.temp-file-cache:true}")
+    private boolean tempFileCache;
+
+    public PdfTextExtractor(@Qualifier("pdfExtractionExecutor") Executor extractionExecutor,
+                            PipelineMetrics metrics) {
+        this.extractionExecutor = extractionExecutor;
+        this.metrics = metrics;
+    }
+
     public List<PageContent> extractText(InputStream pdfInputStream) throws IOException {
         List<PageContent> pages = new ArrayList<>();
+        extractText(pdfInputStream, pages::add);
+        return pages;
+    }
+
+    public int extractText(InputStream pdfInputStream, Consumer<PageContent> pageConsumer) throws IOException {
+        // Each worker opens its own PDDocument, so spool the stream to a file they can all read
+        Path spooled = Files.createTempFile("rag-pdf-", ".pdf");
+        try {
+            Files.copy(pdfInputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+            return extractText(spooled.toFile(), pageConsumer);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    public List<PageContent> extractText(File pdfFile) throws IOException {
+        List<PageContent> pages = new ArrayList<>();
+        extractText(pdfFile, pages::add);
+        return pages;
+    }
+
+    /**
+     * Extract text per page, splitting the document into page ranges that are
+     * stripped concurrently. Pages are handed to the consumer in page order as
+     * soon as their range is done; at most 'maxRangesInFlight' ranges are
+     * extracted ahead of the consumer, so a slow consumer bounds memory.
+     *
+     * @return number of non-empty pages delivered
+     */
+    public int extractText(File pdfFile, Consumer<PageContent> pageConsumer) throws IOException {
+        int totalPages;
+        try (PDDocument document = load(pdfFile)) {
+            totalPages = document.getNumberOfPages();
+        }
+
+        log.info("Extracting text from PDF with {} pages", totalPages);
+
+        int delivered = 0;
+        if (totalPages <= pagesPerTask) {
+            for (PageContent page : extractRange(pdfFile, 1, totalPages)) {
+                pageConsumer.accept(page);
+                delivered++;
+            }
+        } else {
+            Deque<CompletableFuture<List<PageContent>>> inFlight = new ArrayDeque<>();
+            int nextStart = 1;
+            try {
+                while (nextStart <= totalPages || !inFlight.isEmpty()) {
+                    while (nextStart <= totalPages && inFlight.size() < maxRangesInFlight) {
+                        inFlight.addLast(submitRange(pdfFile, nextStart,
+                                Math.min(totalPages, nextStart + pagesPerTask - 1)));
+                        nextStart += pagesPerTask;
+                    }
+
+                    for (PageContent page : inFlight.removeFirst().join()) {
+                        pageConsumer.accept(page);
+                        delivered++;
+                    }
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw e;
+            } finally {
+                inFlight.forEach(range -> range.cancel(false));
+            }
+        }
 
-        try (PDDocument document = PDDocument.load(pdfInputStream)) {
+        log.info("Successfully extracted text from {} pages", delivered);
+        return delivered;
+    }
+
+    private CompletableFuture<List<PageContent>> submitRange(File pdfFile, int first, int last) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return extractRange(pdfFile, first, last);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, extractionExecutor);
+    }
+
+    /**
+     * Single-threaded reference path that strips one page per getText call.
+     * Kept for benchmarking against {@link #extractText(File)}.
+     */
+    public List<PageContent> extractTextSequential(File pdfFile) throws IOException {
+        List<PageContent> pages = new ArrayList<>();
+
+        try (PDDocument document = load(pdfFile)) {
             PDFTextStripper stripper = new PDFTextStripper();
             int totalPages = document.getNumberOfPages();
 
-            log.info("Extracting text from PDF with {} pages", totalPages);
-
             for (int pageNum = 1; pageNum <= totalPages; pageNum++) {
                 stripper.setStartPage(pageNum);
                 stripper.setEndPage(pageNum);
 
-                String pageText = stripper.getText(document);
+                long start = System.nanoTime();
+                String pageText = cleanText(stripper.getText(document));
+                metrics.record(PipelineMetrics.EXTRACTION, start, true);
 
-                // Clean up the text
-                pageText = cleanText(pageText);
-
-                if (!pageText.trim().isEmpty()) {
+                if (!pageText.isEmpty()) {
                     pages.add(new PageContent(pageNum, pageText));
                 }
             }
-
-            log.info("Successfully extracted text from {} pages", pages.size());
         }
 
         return pages;
     }
 
-    private String cleanText(String text) {
+    /**
+     * Strip pages [first, last] in a single pass, collecting text at each page end
+     */
+    private List<PageContent> extractRange(File pdfFile, int first, int last) throws IOException {
+        try (PDDocument document = load(pdfFile)) {
+            PageCollectingStripper stripper = new PageCollectingStripper(metrics);
+            stripper.setStartPage(first);
+            stripper.setEndPage(last);
+            try {
+                stripper.writeText(document, stripper.buffer);
+            } catch (IOException | RuntimeException e) {
+                stripper.pageFailed();
+                throw e;
+            }
+            return stripper.pages;
+        }
+    }
+
+    private PDDocument load(File pdfFile) throws IOException {
+        StreamCacheCreateFunction cache = tempFileCache
+                ? IOUtils.createTempFileOnlyStreamCache()
+                : IOUtils.createMemoryOnlyStreamCache();
+        return Loader.loadPDF(pdfFile, cache);
+    }
+
+    private static String cleanText(String text) {
         // Remove excessive whitespace
         text = text.replaceAll("\\s+", " ");
 
@@ -58,6 +202,47 @@ public class PdfTextExtractor {
         return text.trim();
     }
 
+    private static class PageCollectingStripper extends PDFTextStripper {
+
+        private final StringWriter buffer = new StringWriter();
+        private final List<PageContent> pages = new ArrayList<>();
+        private final PipelineMetrics metrics;
+        private long pageStart;
+
+        PageCollectingStripper(PipelineMetrics metrics) throws IOException {
+            super();
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            pageStart = System.nanoTime();
+            super.startPage(page);
+        }
+
+        // Records the page that was being stripped when extraction failed
+        void pageFailed() {
+            if (pageStart != 0) {
+                metrics.record(PipelineMetrics.EXTRACTION, pageStart, false);
+            }
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            output.flush();
+
+            String pageText = cleanText(buffer.toString());
+            buffer.getBuffer().setLength(0);
+
+            if (!pageText.isEmpty()) {
+                pages.add(new PageContent(getCurrentPageNo(), pageText));
+            }
+            metrics.record(PipelineMetrics.EXTRACTION, pageStart, true);
+            pageStart = 0;
+        }
+    }
+
     public record PageContent(int pageNumber, String text) {
     }
 }
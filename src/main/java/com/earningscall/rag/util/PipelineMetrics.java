@@ -0,0 +1,119 @@
+package com.earningscall.rag.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the ingestion and answering stages. Every stage
+ * reports to the one timer rag.stage.duration, tagged by stage and outcome,
+ * so a single query ranks the stages by latency or error rate.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String STAGE_DURATION = "rag.stage.duration";
+    public static final String STAGE_ITEMS = "rag.stage.items";
+    public static final String LLM_TOKENS = "rag.llm.tokens";
+
+    // Ingestion
+    public static final String EXTRACTION = "extraction";
+    public static final String CHUNKING = "chunking";
+    public static final String EMBEDDING = "embedding";
+    public static final String VECTOR_INSERT = "vector_insert";
+
+    // Answering
+    public static final String QUERY_EMBEDDING = "query_embedding";
+    public static final String VECTOR_SEARCH = "vector_search";
+    public static final String TEXT_SEARCH = "text_search";
+    public static final String RERANK = "rerank";
+    public static final String CONTEXT_BUILD = "context_build";
+    public static final String LLM = "llm";
+    public static final String LLM_FIRST_TOKEN = "llm_first_token";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> errorTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> itemSummaries = new ConcurrentHashMap<>();
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.promptTokens = tokenCounter("in");
+        this.completionTokens = tokenCounter("out");
+    }
+
+    /**
+     * Record a stage that started at the given {@link System#nanoTime()}
+     */
+    public void record(String stage, long startNanos, boolean success) {
+        recordNanos(stage, System.nanoTime() - startNanos, success);
+    }
+
+    public void recordNanos(String stage, long nanos, boolean success) {
+        (success ? successTimers : errorTimers)
+                .computeIfAbsent(stage, key -> stageTimer(key, success))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Run and time a stage; it is recorded as an error if it throws
+     */
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = work.get();
+            success = true;
+            return result;
+        } finally {
+            record(stage, start, success);
+        }
+    }
+
+    public void time(String stage, Runnable work) {
+        time(stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record how many items (pages, texts, chunks) one run of a stage handled
+     */
+    public void items(String stage, int count) {
+        itemSummaries.computeIfAbsent(stage, key -> DistributionSummary.builder(STAGE_ITEMS)
+                        .description("Items handled per run of a pipeline stage")
+                        .tag("stage", key)
+                        .register(registry))
+                .record(count);
+    }
+
+    public void tokens(long prompt, long completion) {
+        promptTokens.increment(prompt);
+        completionTokens.increment(completion);
+    }
+
+    private Timer stageTimer(String stage, boolean success) {
+        return Timer.builder(STAGE_DURATION)
+                .description("Duration of one run of a pipeline stage")
+                .tag("stage", stage)
+                .tag("outcome", success ? "success" : "error")
+                .register(registry);
+    }
+
+    private Counter tokenCounter(String direction) {
+        return Counter.builder(LLM_TOKENS)
+                .description("Tokens sent to and generated by the chat model")
+                .tag("direction", direction)
+                .register(registry);
+    }
+}
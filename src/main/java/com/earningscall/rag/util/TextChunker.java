@@ -7,112 +7,226 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 public class TextChunker {
 
+    private final TokenCounter tokenCounter;
+
+    // Unit of chunk size and overlap: chars or tokens
+    @Value("${rag.chunk.unit:chars}")
+    private String unit;
+
     @Value("${rag.chunk.size:800}")
     private int chunkSize;
 
     @Value("${rag.chunk.overlap:150}")
     private int overlapSize;
 
+    public TextChunker(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * Chunk pages in a single forward scan. Sentences end at '.', '!' or '?'
+     * followed by whitespace; they are located by index and appended straight
+     * into one reusable buffer, so no intermediate sentence lists are built.
+     * In token mode each sentence is tokenized once and the chunk size is the
+     * running sum of its sentences' token counts.
+     */
     public List<TextChunk> chunkText(List<PdfTextExtractor.PageContent> pages) {
         List<TextChunk> chunks = new ArrayList<>();
-        StringBuilder currentChunk = new StringBuilder();
-        int currentLength = 0;
-        int chunkIndex = 0;
-        Integer currentPageNumber = null;
+        Session session = newSession(chunks::add);
 
         for (PdfTextExtractor.PageContent page : pages) {
-            String pageText = page.text();
+            session.accept(page);
+        }
+        session.finish();
+
+        log.info("Created {} chunks from {} pages", chunks.size(), pages.size());
+        return chunks;
+    }
 
-            // Split into sentences to avoid breaking mid-sentence
-            List<String> sentences = splitIntoSentences(pageText);
+    /**
+     * Start an incremental chunking session for pages that arrive one at a time;
+     * chunks are handed to the sink as soon as they are complete
+     */
+    public Session newSession(Consumer<TextChunk> sink) {
+        return new Session(sink, "tokens".equalsIgnoreCase(unit));
+    }
 
-            for (String sentence : sentences) {
-                int sentenceLength = sentence.length();
+    public class Session {
 
-                // If adding this sentence would exceed chunk size, save current chunk
-                if (currentLength + sentenceLength > chunkSize && currentLength > 0) {
-                    String chunkText = currentChunk.toString().trim();
+        private final Consumer<TextChunk> sink;
+        private final boolean tokens;
+        private final StringBuilder buffer;
+        private int bufferTokens = 0;
+        private int chunkIndex = 0;
+        private Integer currentPageNumber = null;
 
-                    if (!chunkText.isEmpty()) {
-                        Map<String, Object> metadata = new HashMap<>();
-                        metadata.put("pageNumber", currentPageNumber);
-                        metadata.put("chunkIndex", chunkIndex);
+        private Session(Consumer<TextChunk> sink, boolean tokens) {
+            this.sink = sink;
+            this.tokens = tokens;
+            this.buffer = new StringBuilder(tokens ? chunkSize * 6 : chunkSize + overlapSize + 64);
+        }
 
-                        chunks.add(TextChunk.builder()
-                                .text(chunkText)
-                                .chunkIndex(chunkIndex)
-                                .pageNumber(currentPageNumber)
-                                .metadata(metadata)
-                                .build());
+        public void accept(PdfTextExtractor.PageContent page) {
+            String pageText = page.text();
+            int length = pageText.length();
+            int sentenceStart = 0;
+            int pos = 1;
+
+            while (true) {
+                // Find the next boundary: a whitespace run preceded by sentence punctuation
+                int boundary = -1;
+                for (; pos < length; pos++) {
+                    if (isWhitespace(pageText.charAt(pos)) && isSentenceEnd(pageText.charAt(pos - 1))) {
+                        boundary = pos;
+                        break;
+                    }
+                }
 
-                        chunkIndex++;
+                int sentenceEnd = boundary >= 0 ? boundary : length;
+
+                // The tail after a final boundary is empty and produces no sentence
+                // (an empty page still yields one empty sentence)
+                if (sentenceEnd > sentenceStart || (boundary < 0 && length == 0)) {
+                    int sentenceSize = tokens
+                            ? tokenCounter.count(pageText, sentenceStart, sentenceEnd)
+                            : sentenceEnd - sentenceStart;
+                    int currentSize = tokens ? bufferTokens : buffer.length();
+
+                    // If adding this sentence would exceed chunk size, save current chunk
+                    if (currentSize + sentenceSize > chunkSize && buffer.length() > 0) {
+                        if (emitChunk()) {
+                            chunkIndex++;
+                        }
+
+                        // Start new chunk with overlap
+                        if (tokens) {
+                            int start = tokenOverlapStart(buffer);
+                            bufferTokens = tokenCounter.count(buffer, start, buffer.length());
+                            buffer.delete(0, start);
+                        } else {
+                            buffer.delete(0, overlapStart(buffer));
+                        }
                     }
 
-                    // Start new chunk with overlap
-                    String overlapText = getOverlapText(currentChunk.toString());
-                    currentChunk = new StringBuilder(overlapText);
-                    currentLength = overlapText.length();
+                    buffer.append(pageText, sentenceStart, sentenceEnd).append(' ');
+                    bufferTokens += sentenceSize;
+
+                    if (currentPageNumber == null) {
+                        currentPageNumber = page.pageNumber();
+                    }
                 }
 
-                currentChunk.append(sentence).append(" ");
-                currentLength += sentenceLength + 1;
+                if (boundary < 0) {
+                    break;
+                }
 
-                if (currentPageNumber == null) {
-                    currentPageNumber = page.pageNumber();
+                // Skip the whole whitespace run
+                pos = boundary + 1;
+                while (pos < length && isWhitespace(pageText.charAt(pos))) {
+                    pos++;
                 }
+                sentenceStart = pos;
+                pos++;
             }
         }
 
-        // Add final chunk if there's remaining text
-        if (currentLength > 0) {
-            String chunkText = currentChunk.toString().trim();
-
-            if (!chunkText.isEmpty()) {
-                Map<String, Object> metadata = new HashMap<>();
-                metadata.put("pageNumber", currentPageNumber);
-                metadata.put("chunkIndex", chunkIndex);
-
-                chunks.add(TextChunk.builder()
-                        .text(chunkText)
-                        .chunkIndex(chunkIndex)
-                        .pageNumber(currentPageNumber)
-                        .metadata(metadata)
-                        .build());
+        /**
+         * Flush the final chunk if there's remaining text
+         */
+        public void finish() {
+            if (buffer.length() > 0) {
+                emitChunk();
+                buffer.setLength(0);
             }
         }
 
-        log.info("Created {} chunks from {} pages", chunks.size(), pages.size());
-        return chunks;
-    }
+        /**
+         * Emit the trimmed buffer contents as a chunk; returns false if it was blank
+         */
+        private boolean emitChunk() {
+            int start = 0;
+            int end = buffer.length();
+            while (start < end && buffer.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && buffer.charAt(end - 1) <= ' ') {
+                end--;
+            }
 
-    private List<String> splitIntoSentences(String text) {
-        // Simple sentence splitting - can be enhanced with NLP libraries
-        String[] sentences = text.split("(?<=[.!?])\\s+");
-        return List.of(sentences);
+            if (start == end) {
+                return false;
+            }
+
+            sink.accept(TextChunk.builder()
+                    .text(buffer.substring(start, end))
+                    .chunkIndex(chunkIndex)
+                    .pageNumber(currentPageNumber)
+                    .metadata(Map.of("pageNumber", currentPageNumber, "chunkIndex", chunkIndex))
+                    .build());
+            return true;
+        }
     }
 
-    private String getOverlapText(String text) {
-        if (text.length() <= overlapSize) {
-            return text;
+    /**
+     * Index where the overlap carried into the next chunk begins: the last
+     * 'overlapSize' characters, moved forward to a word boundary if one is
+     * found in the first half of that window
+     */
+    private int overlapStart(StringBuilder buffer) {
+        int length = buffer.length();
+        if (length <= overlapSize) {
+            return 0;
         }
 
-        // Get last 'overlapSize' characters, but try to start at a word boundary
-        String overlap = text.substring(Math.max(0, text.length() - overlapSize));
-        int firstSpace = overlap.indexOf(' ');
+        int start = length - overlapSize;
+        int firstSpace = buffer.indexOf(" ", start) - start;
 
-        if (firstSpace > 0 && firstSpace < overlap.length() / 2) {
-            overlap = overlap.substring(firstSpace + 1);
+        if (firstSpace > 0 && firstSpace < overlapSize / 2) {
+            start += firstSpace + 1;
         }
 
-        return overlap;
+        return start;
+    }
+
+    /**
+     * Token-mode overlap: the longest run of trailing whole words that fits in
+     * 'overlapSize' tokens
+     */
+    private int tokenOverlapStart(StringBuilder buffer) {
+        int start = buffer.length();
+        int cursor = buffer.length() - 1; // skip the trailing separator
+        int tokens = 0;
+
+        while (cursor > 0) {
+            int wordStart = buffer.lastIndexOf(" ", cursor - 1) + 1;
+            // Count the word with its leading space, as BPE sees it mid-text
+            int wordTokens = tokenCounter.count(buffer, Math.max(0, wordStart - 1), cursor);
+            if (tokens + wordTokens > overlapSize) {
+                break;
+            }
+            tokens += wordTokens;
+            start = wordStart;
+            cursor = wordStart - 1;
+        }
+
+        return start;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    // Matches the regex \s class: [ \t\n\x0B\f\r]
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     @Data
@@ -122,5 +236,7 @@ public class TextChunker {
         private Integer chunkIndex;
         private Integer pageNumber;
         private Map<String, Object> metadata;
+        // Set by the ingestion pipeline's embedding stage; null until then
+        private float[] embedding;
     }
 }
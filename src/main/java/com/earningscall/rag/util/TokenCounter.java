@@ -0,0 +1,31 @@
+package com.earningscall.rag.util;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts tokens with an offline BPE tokenizer (jtokkit, vocabulary bundled in
+ * the jar). cl100k_base matches both text-embedding-ada-002 and gpt-4.
+ */
+@Component
+public class TokenCounter {
+
+    private final Encoding encoding;
+
+    public TokenCounter(@Value("${rag.chunk.encoding:cl100k_base}") String encodingName) {
+        EncodingType type = EncodingType.fromName(encodingName)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tokenizer encoding: " + encodingName));
+        this.encoding = Encodings.newLazyEncodingRegistry().getEncoding(type);
+    }
+
+    public int count(String text) {
+        return text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    public int count(CharSequence text, int start, int end) {
+        return start >= end ? 0 : encoding.countTokensOrdinary(text.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.earningscall.rag.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Local disk spool for uploaded PDFs. Uploads are streamed to disk while
+ * their SHA-256 is computed, then kept under their document's id until
+ * ingestion has read them.
+ */
+@Slf4j
+@Component
+public class UploadSpool {
+
+    private final Path directory;
+
+    public UploadSpool(@Value("${rag.upload.spool-dir:${java.io.tmpdir}/rag-uploads}") Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create upload spool " + directory, e);
+        }
+    }
+
+    /**
+     * Stream the upload to a temp file in the spool, hashing it on the way
+     */
+    public SpooledUpload spool(InputStream upload) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        Path temp = Files.createTempFile(directory, "upload-", ".part");
+        try (InputStream in = new DigestInputStream(upload, digest)) {
+            long size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            return new SpooledUpload(HexFormat.of().formatHex(digest.digest()), temp, size);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Move a spooled upload to the location of the document it was stored as.
+     * Not keyed by content: the same bytes can belong to several documents,
+     * each of which discards its own file when ingestion ends.
+     */
+    public Path commit(SpooledUpload upload, UUID documentId) throws IOException {
+        Path target = directory.resolve(documentId + ".pdf");
+        return Files.move(upload.path(), target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Drop a spooled file once it is no longer needed
+     */
+    public void discard(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", path, e);
+        }
+    }
+
+    public record SpooledUpload(String sha256, Path path, long size) {
+    }
+}
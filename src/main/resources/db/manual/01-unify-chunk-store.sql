@@ -0,0 +1,43 @@
+-- Move embeddings from Spring AI's vector_store table into document_chunks,
+-- which now holds text, metadata and embedding for every chunk.
+-- Run once against an existing database:
+--   psql -U raguser -d earnings_call_db -f 01-unify-chunk-store.sql
+
+BEGIN;
+
+-- Chunks written to both tables: copy the embedding and full metadata across
+UPDATE document_chunks dc
+SET embedding = vs.embedding,
+    metadata  = vs.metadata::jsonb
+FROM vector_store vs
+WHERE dc.embedding IS NULL
+  AND dc.document_id = (vs.metadata ->> 'documentId')::uuid
+  AND dc.chunk_index = (vs.metadata ->> 'chunkIndex')::int;
+
+-- Chunks that only exist in vector_store
+INSERT INTO document_chunks (id, document_id, chunk_text, chunk_index, page_number, metadata, embedding, created_at)
+SELECT vs.id,
+       (vs.metadata ->> 'documentId')::uuid,
+       vs.content,
+       (vs.metadata ->> 'chunkIndex')::int,
+       (vs.metadata ->> 'pageNumber')::int,
+       vs.metadata::jsonb,
+       vs.embedding,
+       CURRENT_TIMESTAMP
+FROM vector_store vs
+JOIN documents d ON d.id = (vs.metadata ->> 'documentId')::uuid
+WHERE NOT EXISTS (
+    SELECT 1 FROM document_chunks dc
+    WHERE dc.document_id = (vs.metadata ->> 'documentId')::uuid
+      AND dc.chunk_index = (vs.metadata ->> 'chunkIndex')::int
+);
+
+-- Chunks that never got an embedding cannot be searched
+DELETE FROM document_chunks WHERE embedding IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_chunks_embedding ON document_chunks USING hnsw (embedding vector_cosine_ops);
+
+COMMIT;
+
+-- Once search has been verified against document_chunks:
+-- DROP TABLE vector_store;
@@ -0,0 +1,9 @@
+-- Full-text search column and index for hybrid retrieval.
+-- Run once against an existing database:
+--   psql -U raguser -d earnings_call_db -f 02-chunk-full-text.sql
+
+ALTER TABLE document_chunks
+    ADD COLUMN IF NOT EXISTS chunk_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('english', chunk_text)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chunks_tsv ON document_chunks USING gin (chunk_tsv);
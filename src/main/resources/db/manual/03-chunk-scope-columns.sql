@@ -0,0 +1,27 @@
+-- Company and fiscal period columns for scoped retrieval, backfilled from documents.
+-- Run once against an existing database:
+--   psql -U raguser -d earnings_call_db -f 03-chunk-scope-columns.sql
+
+BEGIN;
+
+ALTER TABLE documents
+    ADD COLUMN IF NOT EXISTS fiscal_year INTEGER,
+    ADD COLUMN IF NOT EXISTS fiscal_quarter INTEGER;
+
+ALTER TABLE document_chunks
+    ADD COLUMN IF NOT EXISTS company_key VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS fiscal_year INTEGER,
+    ADD COLUMN IF NOT EXISTS fiscal_quarter INTEGER;
+
+-- Older chunks never carried the company in their metadata either
+UPDATE document_chunks dc
+SET company_key = lower(trim(d.company_name)),
+    metadata    = coalesce(dc.metadata, '{}'::jsonb) || jsonb_build_object('companyName', d.company_name)
+FROM documents d
+WHERE dc.document_id = d.id
+  AND nullif(trim(d.company_name), '') IS NOT NULL
+  AND dc.company_key IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_chunks_scope ON document_chunks(company_key, fiscal_year, fiscal_quarter);
+
+COMMIT;
@@ -6,9 +6,12 @@ CREATE TABLE IF NOT EXISTS documents (
     id UUID PRIMARY KEY,
     filename VARCHAR(255) NOT NULL,
     company_name VARCHAR(255),
+    fiscal_year INTEGER,
+    fiscal_quarter INTEGER,
     upload_timestamp TIMESTAMP NOT NULL,
     processing_status VARCHAR(50) NOT NULL,
     total_chunks INTEGER DEFAULT 0,
+    content_hash VARCHAR(64),
     metadata JSONB,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
@@ -22,16 +25,32 @@ CREATE TABLE IF NOT EXISTS document_chunks (
     chunk_index INTEGER NOT NULL,
     embedding vector(1536),
     page_number INTEGER,
+    -- Search scope, denormalized from documents; company_key is the trimmed, lower-cased company name
+    company_key VARCHAR(255),
+    fiscal_year INTEGER,
+    fiscal_quarter INTEGER,
     metadata JSONB,
+    chunk_tsv tsvector GENERATED ALWAYS AS (to_tsvector('english', chunk_text)) STORED,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT fk_document FOREIGN KEY (document_id) REFERENCES documents(id)
 );
 
+-- Content-addressed embedding cache (key = SHA-256 of model name + normalized text)
+CREATE TABLE IF NOT EXISTS embedding_cache (
+    cache_key VARCHAR(64) PRIMARY KEY,
+    model_name VARCHAR(255) NOT NULL,
+    embedding JSONB NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
 CREATE INDEX IF NOT EXISTS idx_documents_status ON documents(processing_status);
 CREATE INDEX IF NOT EXISTS idx_documents_company ON documents(company_name);
+CREATE INDEX IF NOT EXISTS idx_documents_content_hash ON documents(content_hash);
 CREATE INDEX IF NOT EXISTS idx_chunks_document_id ON document_chunks(document_id);
+CREATE INDEX IF NOT EXISTS idx_chunks_scope ON document_chunks(company_key, fiscal_year, fiscal_quarter);
 CREATE INDEX IF NOT EXISTS idx_chunks_embedding ON document_chunks USING hnsw (embedding vector_cosine_ops);
+CREATE INDEX IF NOT EXISTS idx_chunks_tsv ON document_chunks USING gin (chunk_tsv);
 
 -- Function to update timestamp
 CREATE OR REPLACE FUNCTION update_updated_at_column()
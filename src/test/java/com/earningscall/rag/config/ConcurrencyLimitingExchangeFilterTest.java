@@ -0,0 +1,68 @@
+package com.earningscall.rag.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitingExchangeFilterTest {
+
+    private final ClientRequest request =
+            ClientRequest.create(HttpMethod.POST, URI.create("http://localhost/v1/chat/completions")).build();
+
+    private final ExchangeFunction streamedAnswer = request -> Mono.just(
+            ClientResponse.create(HttpStatus.OK, ExchangeStrategies.withDefaults())
+                    .body(Flux.just("data: Revenue", " grew").map(line -> DefaultDataBufferFactory.sharedInstance
+                            .wrap(line.getBytes(StandardCharsets.UTF_8))))
+                    .build());
+
+    @Test
+    void testPermitIsHeldUntilTheStreamedBodyIsRead() {
+        ExchangeFilterFunction filter = new ConcurrencyLimitingInterceptor(1, Duration.ofMillis(50)).exchangeFilter();
+
+        ClientResponse first = filter.filter(request, streamedAnswer).block();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> filter.filter(request, streamedAnswer).block());
+        assertInstanceOf(IOException.class, Exceptions.unwrap(e));
+
+        assertEquals("data: Revenue grew", first.bodyToMono(String.class).block());
+        assertNotNull(filter.filter(request, streamedAnswer).block());
+    }
+
+    @Test
+    void testFailedExchangeReleasesItsPermit() {
+        ExchangeFilterFunction filter = new ConcurrencyLimitingInterceptor(1, Duration.ofMillis(50)).exchangeFilter();
+        ExchangeFunction failing = request -> Mono.error(new IOException("connection reset"));
+
+        assertThrows(RuntimeException.class, () -> filter.filter(request, failing).block());
+        assertNotNull(filter.filter(request, streamedAnswer).block());
+    }
+
+    @Test
+    void testBlockingAndStreamedCallsShareThePermits() {
+        ConcurrencyLimitingInterceptor interceptor = new ConcurrencyLimitingInterceptor(1, Duration.ofMillis(50));
+        ClientResponse streaming = interceptor.exchangeFilter().filter(request, streamedAnswer).block();
+
+        assertThrows(IOException.class, () -> interceptor.intercept(new MockClientHttpRequest(), new byte[0],
+                (httpRequest, body) -> fail("No slot should be free")));
+
+        streaming.releaseBody().block();
+        assertNotNull(interceptor.exchangeFilter().filter(request, streamedAnswer).block());
+    }
+}
@@ -0,0 +1,76 @@
+package com.earningscall.rag.controller;
+
+import com.earningscall.rag.model.dto.BatchAnswerEvent;
+import com.earningscall.rag.model.dto.QuestionResponse;
+import com.earningscall.rag.service.RagService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class QuestionControllerTest {
+
+    private RagService ragService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ragService = mock(RagService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new QuestionController(ragService)).build();
+    }
+
+    @Test
+    void testBatchStreamsNamedEventsInServiceOrder() throws Exception {
+        QuestionResponse response = QuestionResponse.builder().answer("Revenue grew 12%.").cached(false).build();
+        when(ragService.answerBatch(anyList())).thenReturn(Flux.just(
+                BatchAnswerEvent.answer(1, "What was margin?", response),
+                BatchAnswerEvent.error(0, "What was revenue?", "database unavailable"),
+                BatchAnswerEvent.done(1, 1, 42)));
+
+        MvcResult result = mockMvc.perform(post("/api/questions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .content("""
+                                {"questions": [{"question": "What was revenue?"}, {"question": "What was margin?"}]}
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("""
+                        event:answer
+                        data:{"index":1,"question":"What was margin?\"""")))
+                .andExpect(content().string(containsString("""
+                        event:error
+                        data:{"index":0,"question":"What was revenue?","error":"database unavailable"}""")))
+                .andExpect(content().string(containsString("""
+                        event:done
+                        data:{"answered":1,"failed":1,"processingTimeMs":42}""")))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.indexOf("event:answer") < body.indexOf("event:error"));
+        assertTrue(body.indexOf("event:error") < body.indexOf("event:done"));
+    }
+
+    @Test
+    void testBatchRejectsEmptyQuestionList() throws Exception {
+        mockMvc.perform(post("/api/questions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"questions\": []}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(ragService);
+    }
+}
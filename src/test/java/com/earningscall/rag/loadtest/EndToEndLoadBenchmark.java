@@ -0,0 +1,265 @@
+package com.earningscall.rag.loadtest;
+
+import com.earningscall.rag.util.TestPdfs;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Boots the whole application against a fake OpenAI server, H2 and the
+ * in-memory HNSW store (see application-loadtest.yml), seeds it with
+ * uploads, then drives concurrent questions and uploads for a fixed time and
+ * prints throughput and p50/p95/p99 latency per endpoint. Use it to size
+ * rag.async.*, rag.ingest.*, rag.embedding.batch.concurrency and the Hikari
+ * pool, passing them as system properties, and to compare request handling
+ * on platform threads with the java21 profile's virtual threads.
+ * Run with: mvn [-Pjava21] test -Dtest=EndToEndLoadBenchmark -Drag.benchmark=true
+ * [-Dloadtest.askers=32 -Dloadtest.duration=PT60S -Dloadtest.openai.chat-first-token=PT1S ...]
+ */
+@EnabledIfSystemProperty(named = "rag.benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class EndToEndLoadBenchmark {
+
+    private static final String UPLOAD = "POST /api/documents/upload";
+    private static final String ASK = "POST /api/questions/ask";
+    private static final String INGEST = "ingest (upload to COMPLETED)";
+
+    private static final String[] COMPANIES = {"Acme Corp", "Globex", "Initech", "Umbrella"};
+    private static final String[] QUESTIONS = {
+            "What was revenue for the quarter?",
+            "How much did gross margin expand?",
+            "What is the full-year guidance?",
+            "How many shares were repurchased?",
+            "What was free cash flow?",
+            "What drove the margin improvement?",
+    };
+
+    private static final int DOCUMENTS = Integer.getInteger("loadtest.documents", 8);
+    private static final int PAGES = Integer.getInteger("loadtest.pages", 20);
+    private static final int ASKERS = Integer.getInteger("loadtest.askers", 16);
+    private static final int UPLOADERS = Integer.getInteger("loadtest.uploaders", 2);
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+
+    private static FakeOpenAiServer openAi;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final AtomicInteger uploadSequence = new AtomicInteger();
+    private final Map<String, Long> pendingIngests = new ConcurrentHashMap<>();
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    Environment environment;
+
+    @TempDir
+    Path tempDir;
+
+    @DynamicPropertySource
+    static void openAiProperties(DynamicPropertyRegistry registry) throws IOException {
+        openAi = new FakeOpenAiServer(FakeOpenAiServer.Settings.fromSystemProperties()).start();
+        registry.add("spring.ai.openai.base-url", openAi::baseUrl);
+    }
+
+    @AfterAll
+    static void stopOpenAi() {
+        if (openAi != null) {
+            openAi.close();
+        }
+    }
+
+    @Test
+    void driveUploadAndAskTraffic() throws Exception {
+        System.out.printf("Load test: %d seed documents x %d pages, %d askers, %d uploaders for %s on %s threads%n",
+                DOCUMENTS, PAGES, ASKERS, UPLOADERS, DURATION,
+                Threading.VIRTUAL.isActive(environment) ? "virtual" : "platform");
+
+        LatencyRecorder seed = new LatencyRecorder();
+        runFor(Math.max(1, UPLOADERS), () -> uploadSequence.get() < DOCUMENTS, () -> {
+            int sequence = uploadSequence.getAndIncrement();
+            if (sequence < DOCUMENTS) {
+                upload(seed, sequence);
+            }
+        }, null);
+        awaitIngestion(seed, Duration.ofMinutes(5));
+        System.out.print(seed.report("Seeding"));
+        assertEquals(0, pendingIngests.size(), "Seed documents did not finish ingesting");
+
+        LatencyRecorder mixed = new LatencyRecorder();
+        long deadline = System.nanoTime() + DURATION.toNanos();
+        ExecutorService uploaders = Executors.newFixedThreadPool(Math.max(1, UPLOADERS));
+        if (UPLOADERS > 0) {
+            runFor(UPLOADERS, () -> System.nanoTime() < deadline,
+                    () -> upload(mixed, uploadSequence.getAndIncrement()), uploaders);
+        }
+        runFor(ASKERS, () -> System.nanoTime() < deadline, () -> ask(mixed), null);
+        uploaders.shutdown();
+        uploaders.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.print(mixed.report("Mixed traffic"));
+
+        LatencyRecorder drain = new LatencyRecorder();
+        awaitIngestion(drain, Duration.ofMinutes(5));
+        System.out.print(drain.report("Ingestion of uploads made under load"));
+
+        System.out.println(openAi.stats());
+        System.out.println("executors: " + get("/api/stats/executors"));
+        System.out.println("answer cache: " + get("/api/stats/answer-cache"));
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run the step in a loop on each worker while the condition holds; waits
+     * for the workers unless an executor is passed, in which case they run in
+     * the background on it
+     */
+    private void runFor(int workers, BooleanSupplier condition, Step step, ExecutorService background)
+            throws InterruptedException {
+        ExecutorService executor = background != null ? background : Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                while (condition.getAsBoolean()) {
+                    try {
+                        step.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Load step failed: " + e);
+                    }
+                }
+            });
+        }
+        if (background == null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+    }
+
+    private void upload(LatencyRecorder recorder, int sequence) throws Exception {
+        String title = "load test transcript " + sequence + " " + UUID.randomUUID();
+        Path file = TestPdfs.generate(tempDir.resolve(sequence + ".pdf"), PAGES, title);
+        byte[] pdf = Files.readAllBytes(file);
+        Files.delete(file);
+        String company = COMPANIES[sequence % COMPANIES.length];
+
+        String boundary = "loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pdf.length + 1024);
+        part(body, boundary, "companyName", null, company.getBytes(StandardCharsets.UTF_8));
+        part(body, boundary, "fiscalYear", null, "2024".getBytes(StandardCharsets.UTF_8));
+        part(body, boundary, "fiscalQuarter", null, String.valueOf(sequence % 4 + 1).getBytes(StandardCharsets.UTF_8));
+        part(body, boundary, "file", sequence + ".pdf", pdf);
+        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/documents/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        recorder.record(UPLOAD, System.nanoTime() - start, response.statusCode() / 100 == 2);
+
+        if (response.statusCode() == 201) {
+            String documentId = objectMapper.readTree(response.body()).path("documentId").asText();
+            pendingIngests.put(documentId, start);
+        }
+    }
+
+    private void ask(LatencyRecorder recorder) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> question = new HashMap<>();
+        question.put("question", QUESTIONS[random.nextInt(QUESTIONS.length)]);
+        if (random.nextBoolean()) {
+            question.put("companyName", COMPANIES[random.nextInt(COMPANIES.length)]);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/questions/ask"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(question)))
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        recorder.record(ASK, System.nanoTime() - start, response.statusCode() == 200);
+    }
+
+    /**
+     * Poll every pending document until it completes or fails, recording
+     * the time from upload to completion
+     */
+    private void awaitIngestion(LatencyRecorder recorder, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!pendingIngests.isEmpty() && System.nanoTime() < deadline) {
+            for (String documentId : List.copyOf(pendingIngests.keySet())) {
+                JsonNode status = objectMapper.readTree(get("/api/documents/" + documentId + "/status"));
+                String state = status.path("status").asText();
+                if ("COMPLETED".equals(state) || "FAILED".equals(state)) {
+                    long uploadedAt = pendingIngests.remove(documentId);
+                    recorder.record(INGEST, System.nanoTime() - uploadedAt, "COMPLETED".equals(state));
+                }
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private String get(String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void part(ByteArrayOutputStream body, String boundary, String name, String filename,
+                             byte[] content) throws IOException {
+        StringBuilder header = new StringBuilder("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append('"');
+        if (filename != null) {
+            header.append("; filename=\"").append(filename).append("\"\r\nContent-Type: application/pdf");
+        }
+        header.append("\r\n\r\n");
+        body.write(header.toString().getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,235 @@
+package com.earningscall.rag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the OpenAI embeddings and chat completions endpoints,
+ * with configurable latency and token rate. Embeddings hash the input's words
+ * into a normalized vector, so texts sharing words are close and retrieval
+ * behaves plausibly. Chat answers are a fixed number of filler tokens,
+ * optionally streamed as server-sent events.
+ */
+public class FakeOpenAiServer implements AutoCloseable {
+
+    private static final int DIMENSIONS = 1536;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Fake-OpenAI");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong embeddingCalls = new AtomicLong();
+    private final AtomicLong embeddingInputs = new AtomicLong();
+    private final AtomicLong chatCalls = new AtomicLong();
+
+    /**
+     * @param embeddingLatency   time per embeddings call, regardless of batch size
+     * @param chatFirstToken     time until the first answer token
+     * @param tokensPerSecond    answer generation rate after the first token
+     * @param completionTokens   answer length in tokens
+     */
+    public record Settings(Duration embeddingLatency, Duration chatFirstToken, int tokensPerSecond,
+                           int completionTokens) {
+
+        /**
+         * Settings from loadtest.openai.* system properties, defaulting to rough gpt-4 / ada-002 figures
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Duration.parse(System.getProperty("loadtest.openai.embedding-latency", "PT0.15S")),
+                    Duration.parse(System.getProperty("loadtest.openai.chat-first-token", "PT0.5S")),
+                    Integer.getInteger("loadtest.openai.tokens-per-second", 40),
+                    Integer.getInteger("loadtest.openai.completion-tokens", 120));
+        }
+    }
+
+    public FakeOpenAiServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/v1/embeddings", exchange -> handle(exchange, this::embeddings));
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::chat));
+        server.setExecutor(executor);
+    }
+
+    public FakeOpenAiServer start() {
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String stats() {
+        return String.format("fake OpenAI: %d embedding calls (%d inputs), %d chat calls",
+                embeddingCalls.get(), embeddingInputs.get(), chatCalls.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            handler.handle(exchange, objectMapper.readTree(body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void embeddings(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        List<String> inputs = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(node -> inputs.add(node.asText()));
+        } else {
+            inputs.add(input.asText());
+        }
+        embeddingCalls.incrementAndGet();
+        embeddingInputs.addAndGet(inputs.size());
+
+        Thread.sleep(settings.embeddingLatency().toMillis());
+
+        ObjectNode response = objectMapper.createObjectNode()
+                .put("object", "list")
+                .put("model", request.path("model").asText("text-embedding-ada-002"));
+        ArrayNode data = response.putArray("data");
+        int promptTokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            ObjectNode item = data.addObject().put("object", "embedding").put("index", i);
+            ArrayNode vector = item.putArray("embedding");
+            for (float value : embed(inputs.get(i))) {
+                vector.add(value);
+            }
+            promptTokens += inputs.get(i).length() / 4 + 1;
+        }
+        response.putObject("usage").put("prompt_tokens", promptTokens).put("total_tokens", promptTokens);
+
+        sendJson(exchange, response);
+    }
+
+    private void chat(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        chatCalls.incrementAndGet();
+        int promptTokens = request.path("messages").toString().length() / 4;
+        String model = request.path("model").asText("gpt-4");
+        long tokenMillis = 1000L / Math.max(1, settings.tokensPerSecond());
+
+        Thread.sleep(settings.chatFirstToken().toMillis());
+
+        if (!request.path("stream").asBoolean(false)) {
+            Thread.sleep(tokenMillis * (settings.completionTokens() - 1));
+            ObjectNode response = completion(model, "chat.completion");
+            ObjectNode choice = response.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+            choice.putObject("message").put("role", "assistant").put("content", answer());
+            response.putObject("usage")
+                    .put("prompt_tokens", promptTokens)
+                    .put("completion_tokens", settings.completionTokens())
+                    .put("total_tokens", promptTokens + settings.completionTokens());
+            sendJson(exchange, response);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int token = 0; token < settings.completionTokens(); token++) {
+            if (token > 0) {
+                Thread.sleep(tokenMillis);
+            }
+            ObjectNode chunk = completion(model, "chat.completion.chunk");
+            ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+            choice.putObject("delta").put("content", token == 0 ? "Revenue" : " grew");
+            choice.putNull("finish_reason");
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+        }
+        ObjectNode last = completion(model, "chat.completion.chunk");
+        last.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop").putObject("delta");
+        writeEvent(out, objectMapper.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+    }
+
+    private ObjectNode completion(String model, String object) {
+        return objectMapper.createObjectNode()
+                .put("id", "chatcmpl-loadtest")
+                .put("object", object)
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+    }
+
+    private String answer() {
+        StringBuilder answer = new StringBuilder("Revenue");
+        for (int token = 1; token < settings.completionTokens(); token++) {
+            answer.append(" grew");
+        }
+        return answer.toString();
+    }
+
+    /**
+     * Feature-hashed bag of words, L2-normalized
+     */
+    static float[] embed(String text) {
+        float[] vector = new float[DIMENSIONS];
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            int hash = word.hashCode();
+            vector[Math.floorMod(hash, DIMENSIONS)] += (hash & 0x10000) == 0 ? 1f : -1f;
+        }
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void sendJson(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
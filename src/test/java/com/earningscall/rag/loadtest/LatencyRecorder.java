@@ -0,0 +1,65 @@
+package com.earningscall.rag.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-endpoint request latencies and error counts for one load phase
+ */
+public class LatencyRecorder {
+
+    private final Map<String, Endpoint> endpoints = new TreeMap<>();
+    private final long startNanos = System.nanoTime();
+
+    public synchronized void record(String endpoint, long nanos, boolean success) {
+        endpoints.computeIfAbsent(endpoint, k -> new Endpoint()).record(nanos, success);
+    }
+
+    /**
+     * One line per endpoint: count, errors, throughput over the phase, mean
+     * requests in flight (total latency over elapsed time) and latency percentiles
+     */
+    public synchronized String report(String phase) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder report = new StringBuilder(String.format("%s (%.1fs)%n", phase, seconds));
+        report.append(String.format("  %-28s %7s %6s %8s %9s %8s %8s %8s %8s%n",
+                "endpoint", "count", "errors", "req/s", "in-flight", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        endpoints.forEach((name, endpoint) -> {
+            long[] sorted = Arrays.copyOf(endpoint.latencies, endpoint.count);
+            Arrays.sort(sorted);
+            report.append(String.format("  %-28s %7d %6d %8.1f %9.1f %8.1f %8.1f %8.1f %8.1f%n",
+                    name, endpoint.count, endpoint.errors, endpoint.count / seconds,
+                    endpoint.totalNanos / 1e9 / seconds,
+                    millis(sorted, 0.50), millis(sorted, 0.95), millis(sorted, 0.99), millis(sorted, 1.0)));
+        });
+        return report.toString();
+    }
+
+    // Nearest-rank percentile
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private static class Endpoint {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private long totalNanos;
+
+        void record(long nanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            totalNanos += nanos;
+            if (!success) {
+                errors++;
+            }
+        }
+    }
+}
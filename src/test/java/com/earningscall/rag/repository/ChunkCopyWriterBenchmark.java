@@ -0,0 +1,127 @@
+package com.earningscall.rag.repository;
+
+import com.earningscall.rag.model.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rows/second for a batched INSERT versus the binary COPY path, against the
+ * Postgres from docker-compose. Both paths write the same rows, 1536-d
+ * embeddings included, the INSERT sending them as vector literals as the
+ * store did before COPY. Runs inside a rolled-back transaction.
+ * Run with: mvn test -Dtest=ChunkCopyWriterBenchmark -Drag.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "rag.benchmark", matches = "true")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ChunkCopyWriter.class)
+class ChunkCopyWriterBenchmark {
+
+    private static final int ROWS = 20_000;
+    private static final int WARMUP_ROWS = 1_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int DIMENSIONS = 1536;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO document_chunks
+                (id, document_id, chunk_text, chunk_index, page_number, company_key, fiscal_year, fiscal_quarter,
+                 metadata, embedding, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?::vector, ?)
+            """;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ChunkCopyWriter copyWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compareBatchedInsertAndCopy() {
+        UUID documentId = documentRepository.saveAndFlush(Document.builder()
+                .filename("benchmark.pdf")
+                .uploadTimestamp(LocalDateTime.now())
+                .processingStatus(Document.ProcessingStatus.COMPLETED)
+                .totalChunks(0)
+                .build()).getId();
+
+        Random random = new Random(42);
+        int chunkIndex = 0;
+        List<ChunkCopyWriter.ChunkRow> warmup = rows(documentId, random, chunkIndex, WARMUP_ROWS);
+        chunkIndex += WARMUP_ROWS;
+        insert(warmup.subList(0, WARMUP_ROWS / 2));
+        copyWriter.write(warmup.subList(WARMUP_ROWS / 2, WARMUP_ROWS));
+
+        List<ChunkCopyWriter.ChunkRow> insertRows = rows(documentId, random, chunkIndex, ROWS);
+        chunkIndex += ROWS;
+        List<ChunkCopyWriter.ChunkRow> copyRows = rows(documentId, random, chunkIndex, ROWS);
+
+        long start = System.nanoTime();
+        insert(insertRows);
+        double insertSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        copyWriter.write(copyRows);
+        double copySeconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(WARMUP_ROWS + 2 * ROWS, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM document_chunks WHERE document_id = ? AND embedding IS NOT NULL",
+                Integer.class, documentId));
+
+        System.out.printf("Writing %d chunk rows with %d-d embeddings%n", ROWS, DIMENSIONS);
+        System.out.printf("  INSERT, batches of %d: %10.0f rows/s%n", BATCH_SIZE, ROWS / insertSeconds);
+        System.out.printf("  COPY binary:            %10.0f rows/s (%.1fx)%n",
+                ROWS / copySeconds, insertSeconds / copySeconds);
+    }
+
+    private void insert(List<ChunkCopyWriter.ChunkRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setObject(1, row.id());
+            ps.setObject(2, row.documentId());
+            ps.setString(3, row.text());
+            ps.setInt(4, row.chunkIndex());
+            ps.setInt(5, row.pageNumber());
+            ps.setString(6, row.companyKey());
+            ps.setInt(7, row.fiscalYear());
+            ps.setInt(8, row.fiscalQuarter());
+            ps.setString(9, row.metadataJson());
+            ps.setString(10, ChunkTableVectorStore.toVectorLiteral(row.embedding()));
+            ps.setTimestamp(11, Timestamp.valueOf(row.createdAt()));
+        });
+    }
+
+    /**
+     * Rows with distinct random embeddings, so neither path benefits from repeated values
+     */
+    private static List<ChunkCopyWriter.ChunkRow> rows(UUID documentId, Random random, int firstIndex, int count) {
+        String text = "CFO: Revenue for the quarter was $4.2 billion, up 12% year over year. ".repeat(10);
+        LocalDateTime now = LocalDateTime.now();
+        List<ChunkCopyWriter.ChunkRow> rows = new ArrayList<>(count);
+        for (int i = firstIndex; i < firstIndex + count; i++) {
+            float[] embedding = new float[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                embedding[d] = (float) random.nextGaussian();
+            }
+            int page = i / 10 + 1;
+            rows.add(new ChunkCopyWriter.ChunkRow(UUID.randomUUID(), documentId, text, i, page, "acme", 2024, 3,
+                    "{\"pageNumber\":" + page + ",\"chunkIndex\":" + i + "}", embedding, now));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,78 @@
+package com.earningscall.rag.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCopyWriterTest {
+
+    @Test
+    void testEncodesRowsInPgCopyBinaryFormat() throws Exception {
+        UUID id = UUID.randomUUID();
+        UUID documentId = UUID.randomUUID();
+        ChunkCopyWriter.ChunkRow row = new ChunkCopyWriter.ChunkRow(id, documentId, "Revenue grew 12%.", 7, null,
+                "acme", 2024, null, "{\"pageNumber\":null}", new float[]{0.5f, -1.0f, 2.25f}, LocalDateTime.of(2000, 1, 1, 0, 0, 1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ChunkCopyWriter.writeHeader(out);
+        ChunkCopyWriter.writeRow(out, row);
+        ChunkCopyWriter.writeTrailer(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(11, in.readShort());
+
+        assertEquals(16, in.readInt());
+        assertEquals(id, new UUID(in.readLong(), in.readLong()));
+        assertEquals(16, in.readInt());
+        assertEquals(documentId, new UUID(in.readLong(), in.readLong()));
+
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        assertEquals("Revenue grew 12%.", new String(text, StandardCharsets.UTF_8));
+
+        assertEquals(4, in.readInt());
+        assertEquals(7, in.readInt());
+        assertEquals(-1, in.readInt()); // null page number
+
+        byte[] companyKey = new byte[in.readInt()];
+        in.readFully(companyKey);
+        assertEquals("acme", new String(companyKey, StandardCharsets.UTF_8));
+        assertEquals(4, in.readInt());
+        assertEquals(2024, in.readInt());
+        assertEquals(-1, in.readInt()); // null fiscal quarter
+
+        byte[] jsonb = new byte[in.readInt()];
+        in.readFully(jsonb);
+        assertEquals(1, jsonb[0]);
+        assertEquals("{\"pageNumber\":null}", new String(jsonb, 1, jsonb.length - 1, StandardCharsets.UTF_8));
+
+        assertEquals(4 + 3 * 4, in.readInt());
+        assertEquals(3, in.readShort());
+        assertEquals(0, in.readShort());
+        assertEquals(0.5f, in.readFloat());
+        assertEquals(-1.0f, in.readFloat());
+        assertEquals(2.25f, in.readFloat());
+
+        assertEquals(8, in.readInt());
+        assertEquals(1_000_000L, in.readLong());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+}
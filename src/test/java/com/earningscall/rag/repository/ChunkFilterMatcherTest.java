@@ -0,0 +1,89 @@
+package com.earningscall.rag.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The expressions of {@link ChunkFilterSqlConverterTest}, evaluated in memory
+ * the way the converted SQL evaluates them
+ */
+class ChunkFilterMatcherTest {
+
+    private final FilterExpressionBuilder b = new FilterExpressionBuilder();
+
+    @Test
+    void testDocumentAndPageBounds() {
+        String documentId = UUID.randomUUID().toString();
+        Predicate<Map<String, Object>> matcher = ChunkFilterMatcher.compile(b.and(
+                b.eq("documentId", documentId),
+                b.gte("pageNumber", 3)).build());
+
+        assertTrue(matcher.test(Map.of("documentId", documentId, "pageNumber", 3)));
+        assertTrue(matcher.test(Map.of("documentId", documentId, "pageNumber", 7)));
+        assertFalse(matcher.test(Map.of("documentId", documentId, "pageNumber", 2)));
+        assertFalse(matcher.test(Map.of("documentId", UUID.randomUUID().toString(), "pageNumber", 3)));
+        assertFalse(matcher.test(Map.of("documentId", documentId)));
+    }
+
+    @Test
+    void testMembershipOrNegatedFlag() {
+        Predicate<Map<String, Object>> matcher = ChunkFilterMatcher.compile(b.or(
+                b.in("documentName", "q1.pdf", "q2.pdf"),
+                b.not(b.eq("reviewed", true))).build());
+
+        assertTrue(matcher.test(Map.of("documentName", "q2.pdf", "reviewed", true)));
+        assertTrue(matcher.test(Map.of("documentName", "q3.pdf", "reviewed", false)));
+        assertFalse(matcher.test(Map.of("documentName", "q3.pdf", "reviewed", true)));
+        // NOT of an unknown comparison is still unknown, as NOT (NULL = ?) is in SQL
+        assertFalse(matcher.test(Map.of("documentName", "q3.pdf")));
+        assertTrue(matcher.test(Map.of("documentName", "q1.pdf")));
+    }
+
+    @Test
+    void testCompanyNameComparesByKey() {
+        Predicate<Map<String, Object>> matcher = ChunkFilterMatcher.compile(b.and(
+                b.eq("companyName", " Acme Corp"),
+                b.and(b.eq("fiscalYear", 2024), b.eq("fiscalQuarter", 3))).build());
+
+        assertTrue(matcher.test(Map.of("companyName", "ACME corp ", "fiscalYear", 2024, "fiscalQuarter", 3)));
+        assertTrue(matcher.test(Map.of("companyName", "Acme Corp", "fiscalYear", 2024L, "fiscalQuarter", 3.0)));
+        assertFalse(matcher.test(Map.of("companyName", "Acme Corp", "fiscalYear", 2024, "fiscalQuarter", 2)));
+        assertFalse(matcher.test(Map.of("companyName", "Globex", "fiscalYear", 2024, "fiscalQuarter", 3)));
+    }
+
+    @Test
+    void testMissingValuesMatchNeitherAComparisonNorItsNegation() {
+        Map<String, Object> untagged = Map.of("documentName", "q1.pdf");
+
+        assertFalse(ChunkFilterMatcher.compile(b.eq("fiscalYear", 2024).build()).test(untagged));
+        assertFalse(ChunkFilterMatcher.compile(b.ne("fiscalYear", 2024).build()).test(untagged));
+        assertFalse(ChunkFilterMatcher.compile(b.not(b.eq("fiscalYear", 2024)).build()).test(untagged));
+        assertFalse(ChunkFilterMatcher.compile(b.nin("fiscalYear", 2023, 2024).build()).test(untagged));
+        assertTrue(ChunkFilterMatcher.compile(b.or(
+                b.eq("fiscalYear", 2024),
+                b.eq("documentName", "q1.pdf")).build()).test(untagged));
+        assertFalse(ChunkFilterMatcher.compile(b.not(b.and(
+                b.eq("fiscalYear", 2024),
+                b.eq("documentName", "q1.pdf"))).build()).test(untagged));
+    }
+
+    @Test
+    void testEmptyListsAreConstants() {
+        Map<String, Object> untagged = Map.of("documentName", "q1.pdf");
+
+        assertFalse(ChunkFilterMatcher.compile(
+                new Filter.Expression(Filter.ExpressionType.IN, new Filter.Key("fiscalYear"),
+                        new Filter.Value(List.of()))).test(untagged));
+        assertTrue(ChunkFilterMatcher.compile(
+                new Filter.Expression(Filter.ExpressionType.NIN, new Filter.Key("fiscalYear"),
+                        new Filter.Value(List.of()))).test(untagged));
+    }
+}
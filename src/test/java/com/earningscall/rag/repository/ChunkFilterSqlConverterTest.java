@@ -0,0 +1,62 @@
+package com.earningscall.rag.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkFilterSqlConverterTest {
+
+    private final FilterExpressionBuilder b = new FilterExpressionBuilder();
+
+    @Test
+    void testColumnKeysAreBoundAsParameters() {
+        UUID documentId = UUID.randomUUID();
+        Filter.Expression expression = b.and(
+                b.eq("documentId", documentId.toString()),
+                b.gte("pageNumber", 3)).build();
+
+        ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(expression);
+
+        assertEquals("(document_id = ? AND page_number >= ?)", predicate.sql());
+        assertEquals(List.of(documentId, 3), predicate.params());
+    }
+
+    @Test
+    void testOtherKeysReadMetadataJson() {
+        Filter.Expression expression = b.or(
+                b.in("documentName", "q1.pdf", "q2.pdf"),
+                b.not(b.eq("reviewed", true))).build();
+
+        ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(expression);
+
+        assertEquals("((metadata->>'documentName') IN (?, ?) OR NOT ((metadata->>'reviewed')::boolean = ?))",
+                predicate.sql());
+        assertEquals(List.of("q1.pdf", "q2.pdf", true), predicate.params());
+    }
+
+    @Test
+    void testCompanyAndFiscalPeriodUseIndexedColumns() {
+        Filter.Expression expression = b.and(
+                b.eq("companyName", " Acme Corp"),
+                b.and(b.eq("fiscalYear", 2024), b.eq("fiscalQuarter", 3))).build();
+
+        ChunkFilterSqlConverter.Predicate predicate = ChunkFilterSqlConverter.convert(expression);
+
+        assertEquals("(company_key = ? AND (fiscal_year = ? AND fiscal_quarter = ?))", predicate.sql());
+        assertEquals(List.of("acme corp", 2024, 3), predicate.params());
+        assertTrue(ChunkFilterSqlConverter.isScoped(expression));
+        assertFalse(ChunkFilterSqlConverter.isScoped(b.eq("fiscalYear", 2024).build()));
+    }
+
+    @Test
+    void testRejectsKeysThatCouldInjectSql() {
+        Filter.Expression expression = b.eq("x') OR 1=1 --", "y").build();
+
+        assertThrows(IllegalArgumentException.class, () -> ChunkFilterSqlConverter.convert(expression));
+    }
+}
@@ -0,0 +1,37 @@
+package com.earningscall.rag.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTextSearchRepositoryTest {
+
+    @Test
+    void testQuestionBecomesAnOrOfItsWords() {
+        assertEquals("what | did | acme | say | about | q3 | revenue | growth",
+                ChunkTextSearchRepository.toOrQuery("What did Acme say about Q3 revenue growth?"));
+    }
+
+    @Test
+    void testTypicalQuestionMatchesChunkWithoutEveryWord() {
+        String chunk = "Revenue grew 12% year over year, driven by Acme's cloud segment.";
+        List<String> alternatives = Arrays.asList(ChunkTextSearchRepository
+                .toOrQuery("What did management say about revenue this quarter?").split(" \\| "));
+
+        // Any one alternative is enough for chunk_tsv @@ query; websearch_to_tsquery needed all of them
+        assertTrue(alternatives.contains("revenue"));
+        assertTrue(alternatives.stream().anyMatch(chunk.toLowerCase(Locale.ROOT)::contains));
+        assertFalse(alternatives.stream().allMatch(chunk.toLowerCase(Locale.ROOT)::contains));
+    }
+
+    @Test
+    void testTsquerySyntaxIsDroppedAndWordsDeduplicated() {
+        assertEquals("margin | 15.5 | guidance",
+                ChunkTextSearchRepository.toOrQuery("margin & !15.5% | (guidance) 'margin':*"));
+        assertEquals("", ChunkTextSearchRepository.toOrQuery("?! --"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.earningscall.rag.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class DocumentEmbeddingsTest {
+
+    @Test
+    void testEmbedsOnlyDocumentsWithoutAnEmbedding() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(List.of("second"))).thenReturn(List.of(new float[]{2f}));
+
+        Document first = new Document("first", Map.of());
+        first.setEmbedding(new float[]{1f});
+        Document second = new Document("second", Map.of());
+        Document third = new Document("third", Map.of());
+        third.setEmbedding(new float[]{3f});
+
+        List<float[]> embeddings = DocumentEmbeddings.resolve(embeddingModel, List.of(first, second, third));
+
+        assertArrayEquals(new float[]{1f}, embeddings.get(0));
+        assertArrayEquals(new float[]{2f}, embeddings.get(1));
+        assertArrayEquals(new float[]{3f}, embeddings.get(2));
+        verify(embeddingModel).embed(List.of("second"));
+    }
+
+    @Test
+    void testSkipsTheModelWhenEveryDocumentIsEmbedded() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        Document document = new Document("text", Map.of());
+        document.setEmbedding(new float[]{1f, 0f});
+
+        assertEquals(1, DocumentEmbeddings.resolve(embeddingModel, List.of(document)).size());
+        verify(embeddingModel, never()).embed(anyList());
+    }
+}
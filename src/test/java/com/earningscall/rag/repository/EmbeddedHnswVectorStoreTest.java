@@ -0,0 +1,225 @@
+package com.earningscall.rag.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class EmbeddedHnswVectorStoreTest {
+
+    private static final String ACME_DOCUMENT = UUID.randomUUID().toString();
+    private static final String GLOBEX_DOCUMENT = UUID.randomUUID().toString();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FilterExpressionBuilder b = new FilterExpressionBuilder();
+    private final List<EmbeddedHnswVectorStore> stores = new ArrayList<>();
+
+    @TempDir
+    Path snapshotDir;
+
+    @AfterEach
+    void closeStores() {
+        stores.forEach(EmbeddedHnswVectorStore::close);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testScopedSearchReturnsOnlyTheCompanyOrDocument() {
+        EmbeddedHnswVectorStore store = inMemoryStore(0.2);
+        store.add(List.of(
+                chunk(ACME_DOCUMENT, "Acme Corp", 1, 1f, 0f, 0f, 0f),
+                chunk(ACME_DOCUMENT, "Acme Corp", 2, 1f, 0.1f, 0f, 0f),
+                chunk(GLOBEX_DOCUMENT, "Globex", 1, 1f, 0.2f, 0f, 0f),
+                chunk(GLOBEX_DOCUMENT, "Globex", 2, 1f, 0.3f, 0f, 0f)));
+
+        assertEquals(Set.of(ACME_DOCUMENT), documentIds(search(store, b.eq("companyName", " ACME corp ").build())));
+
+        List<Document> globexPageTwo = search(store,
+                b.and(b.eq("documentId", GLOBEX_DOCUMENT), b.gte("pageNumber", 2)).build());
+        assertEquals(1, globexPageTwo.size());
+        assertEquals(2, globexPageTwo.get(0).getMetadata().get("pageNumber"));
+
+        assertTrue(search(store, b.and(b.eq("documentId", GLOBEX_DOCUMENT), b.eq("companyName", "Acme Corp")).build())
+                .isEmpty());
+        assertTrue(search(store, b.eq("companyName", "Initech").build()).isEmpty());
+    }
+
+    @Test
+    void testChunksAreIndexedOnlyOnceTheWriteCommits() throws Exception {
+        ChunkCopyWriter copyWriter = mock(ChunkCopyWriter.class);
+        EmbeddedHnswVectorStore store = persistentStore(mock(JdbcTemplate.class), copyWriter);
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.add(List.of(chunk(ACME_DOCUMENT, "Acme Corp", 1, 1f, 0f, 0f, 0f)));
+        List<TransactionSynchronization> committed = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        verify(copyWriter).write(anyList());
+        assertTrue(search(store, null).isEmpty());
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.add(List.of(chunk(GLOBEX_DOCUMENT, "Globex", 1, 1f, 0.1f, 0f, 0f)));
+        List<TransactionSynchronization> rolledBack = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        committed.forEach(TransactionSynchronization::afterCommit);
+        rolledBack.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(Set.of(ACME_DOCUMENT), documentIds(search(store, null)));
+    }
+
+    @Test
+    void testSnapshotRestoreMapsKeptRowsIndexesNewOnesAndDropsDeletedOnes() throws Exception {
+        Document kept = chunk(ACME_DOCUMENT, "Acme Corp", 1, 1f, 0f, 0f, 0f);
+        Document deleted = chunk(ACME_DOCUMENT, "Acme Corp", 2, 0f, 1f, 0f, 0f);
+        Document addedSince = chunk(GLOBEX_DOCUMENT, "Globex", 1, 0f, 0f, 1f, 0f);
+
+        EmbeddedHnswVectorStore first = persistentStore(mock(JdbcTemplate.class), mock(ChunkCopyWriter.class));
+        first.add(List.of(kept, deleted));
+        first.snapshot();
+        first.close();
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row(kept));
+            handler.processRow(row(addedSince));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, document_id, chunk_text, metadata FROM"),
+                any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(row(addedSince));
+            return null;
+        }).when(jdbcTemplate).query(contains("id = ANY(?)"), any(PreparedStatementSetter.class),
+                any(RowCallbackHandler.class));
+
+        EmbeddedHnswVectorStore restored = persistentStore(jdbcTemplate, mock(ChunkCopyWriter.class));
+
+        verify(jdbcTemplate, never()).query(contains("ORDER BY created_at"), any(RowCallbackHandler.class));
+        assertEquals(Set.of(kept.getId(), addedSince.getId()), ids(search(restored, null)));
+        assertEquals(Set.of(addedSince.getId()), ids(search(restored, b.eq("companyName", "Globex").build())));
+    }
+
+    @Test
+    void testCompactionDropsTombstonesAndKeepsIdsSearchable() {
+        EmbeddedHnswVectorStore store = inMemoryStore(0.2);
+        List<Document> chunks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            chunks.add(chunk(i < 5 ? ACME_DOCUMENT : GLOBEX_DOCUMENT, i < 5 ? "Acme Corp" : "Globex", i,
+                    1f, i / 10f, 0f, 0f));
+        }
+        store.add(chunks);
+
+        store.delete(List.of(chunks.get(0).getId(), chunks.get(5).getId(), chunks.get(6).getId()));
+
+        Set<String> live = ids(chunks.subList(1, 5));
+        live.addAll(ids(chunks.subList(7, 10)));
+        assertEquals(live, ids(search(store, null)));
+        assertEquals(ids(chunks.subList(7, 10)), ids(search(store, b.eq("documentId", GLOBEX_DOCUMENT).build())));
+
+        // Ordinals were remapped, so ids must still resolve to their nodes
+        assertEquals(Optional.of(true), store.delete(List.of(chunks.get(9).getId())));
+        live.remove(chunks.get(9).getId());
+        assertEquals(live, ids(search(store, null)));
+    }
+
+    private EmbeddedHnswVectorStore inMemoryStore(double compactionThreshold) {
+        return newStore(mock(JdbcTemplate.class), mock(ChunkCopyWriter.class), false, compactionThreshold);
+    }
+
+    private EmbeddedHnswVectorStore persistentStore(JdbcTemplate jdbcTemplate, ChunkCopyWriter copyWriter)
+            throws Exception {
+        EmbeddedHnswVectorStore store = newStore(jdbcTemplate, copyWriter, true, 0.2);
+        store.open();
+        return store;
+    }
+
+    private EmbeddedHnswVectorStore newStore(JdbcTemplate jdbcTemplate, ChunkCopyWriter copyWriter, boolean persist,
+                                             double compactionThreshold) {
+        EmbeddedHnswVectorStore store = new EmbeddedHnswVectorStore(jdbcTemplate, copyWriter,
+                mock(EmbeddingModel.class), objectMapper, 4, 16, 16, "none", persist, true,
+                compactionThreshold, snapshotDir, Duration.ofHours(1));
+        stores.add(store);
+        return store;
+    }
+
+    private static List<Document> search(EmbeddedHnswVectorStore store, Filter.Expression filter) {
+        SearchRequest request = SearchRequest.query("question").withTopK(20).withSimilarityThreshold(0.0);
+        if (filter != null) {
+            request.withFilterExpression(filter);
+        }
+        return store.similaritySearch(request, new float[]{1f, 0.5f, 0.5f, 0.5f});
+    }
+
+    private static Document chunk(String documentId, String companyName, int page, float... embedding) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("documentId", documentId);
+        metadata.put("companyName", companyName);
+        metadata.put("chunkIndex", page);
+        metadata.put("pageNumber", page);
+        Document document = new Document(UUID.randomUUID().toString(), "Chunk on page " + page, metadata);
+        document.setEmbedding(embedding);
+        return document;
+    }
+
+    private ResultSet row(Document document) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn(document.getId());
+        when(rs.getString("document_id")).thenReturn(document.getMetadata().get("documentId").toString());
+        when(rs.getString("chunk_text")).thenReturn(document.getContent());
+        when(rs.getString("metadata")).thenReturn(objectMapper.writeValueAsString(document.getMetadata()));
+
+        float[] embedding = document.getEmbedding();
+        Float[] values = new Float[embedding.length];
+        for (int i = 0; i < embedding.length; i++) {
+            values[i] = embedding[i];
+        }
+        Array array = mock(Array.class);
+        when(array.getArray()).thenReturn(values);
+        when(rs.getArray("embedding")).thenReturn(array);
+        return rs;
+    }
+
+    private static Set<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).collect(Collectors.toSet());
+    }
+
+    private static Set<String> documentIds(List<Document> documents) {
+        return documents.stream()
+                .map(document -> document.getMetadata().get("documentId").toString())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,40 @@
+package com.earningscall.rag.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTopKTest {
+
+    @Test
+    void testListEndsAtTheFirstSharpDrop() {
+        AdaptiveTopK.Cut cut = AdaptiveTopK.cut(new double[]{0.91, 0.89, 0.80, 0.79}, 1, 0.05, 0.7);
+
+        assertEquals(2, cut.keep());
+        // Best match against the first candidate past the drop
+        assertEquals((0.91 - 0.80) / (1 - 0.80), cut.confidence(), 1e-9);
+    }
+
+    @Test
+    void testGradualDeclineKeepsEverything() {
+        AdaptiveTopK.Cut cut = AdaptiveTopK.cut(new double[]{0.85, 0.83, 0.81}, 1, 0.05, 0.7);
+
+        assertEquals(3, cut.keep());
+        assertEquals((0.85 - 0.7) / (1 - 0.7), cut.confidence(), 1e-9);
+    }
+
+    @Test
+    void testMinimumIsKeptPastADrop() {
+        AdaptiveTopK.Cut cut = AdaptiveTopK.cut(new double[]{0.90, 0.72, 0.71}, 2, 0.05, 0.7);
+
+        assertEquals(3, cut.keep());
+    }
+
+    @Test
+    void testNoCandidatesMeansNoConfidence() {
+        AdaptiveTopK.Cut cut = AdaptiveTopK.cut(new double[0], 2, 0.05, 0.7);
+
+        assertEquals(0, cut.keep());
+        assertEquals(0.0, cut.confidence());
+    }
+}
@@ -0,0 +1,92 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.model.dto.QuestionResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerCacheTest {
+
+    private final UUID documentId = UUID.randomUUID();
+
+    private final AnswerCache cache = new AnswerCache(true, 0.95, 10, Duration.ofHours(1));
+
+    private final QuestionResponse response = QuestionResponse.builder()
+            .answer("Q3 revenue guidance is $4.1B")
+            .cached(false)
+            .build();
+
+    @Test
+    void testNearIdenticalQuestionInSameScopeHits() {
+        cache.put("What was Q3 revenue guidance?", new float[]{1.0f, 0.0f, 0.1f}, scope(documentId, null), response,
+                cache.epoch());
+
+        assertTrue(cache.lookup(new float[]{0.99f, 0.0f, 0.12f}, scope(documentId, null)).isPresent());
+        assertTrue(cache.lookup(new float[]{0.0f, 1.0f, 0.0f}, scope(documentId, null)).isEmpty(), "Dissimilar question");
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f, 0.1f}, scope(null, null)).isEmpty(), "Different scope");
+    }
+
+    @Test
+    void testCompanyScopeIsCaseInsensitive() {
+        cache.put("Buybacks?", new float[]{0.0f, 1.0f}, scope(null, "Acme Corp"), response, cache.epoch());
+
+        assertTrue(cache.lookup(new float[]{0.0f, 1.0f}, scope(null, " acme corp")).isPresent());
+    }
+
+    @Test
+    void testReprocessingInvalidatesEntriesInScope() {
+        UUID otherDocument = UUID.randomUUID();
+        cache.put("a", new float[]{1.0f, 0.0f}, scope(documentId, null), response, cache.epoch());
+        cache.put("b", new float[]{1.0f, 0.0f}, scope(otherDocument, null), response, cache.epoch());
+        cache.put("c", new float[]{1.0f, 0.0f}, scope(null, "Acme"), response, cache.epoch());
+        cache.put("d", new float[]{1.0f, 0.0f}, scope(null, "Globex"), response, cache.epoch());
+        cache.put("e", new float[]{1.0f, 0.0f}, scope(null, null), response, cache.epoch());
+
+        cache.invalidateDocument(documentId, "ACME");
+
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f}, scope(documentId, null)).isEmpty());
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f}, scope(otherDocument, null)).isPresent());
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f}, scope(null, "Acme")).isEmpty());
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f}, scope(null, "Globex")).isPresent());
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f}, scope(null, null)).isEmpty());
+    }
+
+    @Test
+    void testFiscalPeriodIsPartOfTheScope() {
+        cache.put("Margins?", new float[]{1.0f, 0.0f},
+                new VectorStorageService.SearchScope(null, "Acme", 2024, 3), response, cache.epoch());
+
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f},
+                new VectorStorageService.SearchScope(null, "acme", 2024, 3)).isPresent());
+        assertTrue(cache.lookup(new float[]{1.0f, 0.0f},
+                new VectorStorageService.SearchScope(null, "Acme", 2024, 4)).isEmpty());
+    }
+
+    @Test
+    void testAnswerComputedAcrossInvalidationIsNotCached() {
+        long epoch = cache.epoch();
+        cache.invalidateDocument(documentId, null);
+        cache.put("a", new float[]{1.0f, 0.0f}, scope(documentId, null), response, epoch);
+
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testSizeBoundAndTtl() {
+        for (int i = 0; i < 20; i++) {
+            cache.put("q" + i, new float[]{1.0f, i}, scope(null, null), response, cache.epoch());
+        }
+        assertEquals(10, cache.stats().entries());
+
+        AnswerCache expiring = new AnswerCache(true, 0.95, 10, Duration.ZERO);
+        expiring.put("q", new float[]{1.0f}, scope(null, null), response, expiring.epoch());
+        assertTrue(expiring.lookup(new float[]{1.0f}, scope(null, null)).isEmpty());
+    }
+
+    private static VectorStorageService.SearchScope scope(UUID documentId, String companyName) {
+        return new VectorStorageService.SearchScope(documentId, companyName, null, null);
+    }
+}
@@ -0,0 +1,68 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.repository.EmbeddingCacheRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingRequest;
+
+import java.util.List;
+
+import static com.earningscall.rag.service.EmbeddingBatcherTest.withIndexes;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CachingEmbeddingModelTest {
+
+    private final EmbeddingBatcherTest.FakeEmbeddingModel delegate = new EmbeddingBatcherTest.FakeEmbeddingModel(0);
+    private final EmbeddingCache cache = new EmbeddingCache(
+            mock(EmbeddingCacheRepository.class), "text-embedding-ada-002", 100, false);
+    private final CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, () -> cache);
+
+    @Test
+    void testRepeatedTextsAreEmbeddedOnce() {
+        String boilerplate = "This call contains forward-looking statements.";
+
+        List<Embedding> first = model.call(new EmbeddingRequest(List.of(boilerplate, "Revenue grew 12%."), null))
+                .getResults();
+        List<Embedding> second = model.call(new EmbeddingRequest(List.of("  Revenue grew   12%. ", boilerplate), null))
+                .getResults();
+
+        assertEquals(1, delegate.calls.get(), "Second request should be served entirely from cache");
+        assertArrayEquals(first.get(0).getOutput(), second.get(1).getOutput());
+        assertArrayEquals(first.get(1).getOutput(), second.get(0).getOutput());
+
+        EmbeddingCache.CacheStats stats = cache.stats();
+        assertEquals(2, stats.memoryHits());
+        assertEquals(2, stats.misses());
+    }
+
+    @Test
+    void testInvalidDelegateIndexesAreRejectedAndNotCached() {
+        List<String> texts = List.of("Revenue grew 12%.", "Margin expanded.", "Guidance raised.");
+
+        CachingEmbeddingModel duplicate = new CachingEmbeddingModel(withIndexes(0, 2, 2), () -> cache);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> duplicate.call(new EmbeddingRequest(texts, null)));
+        assertEquals("Embedding model returned index 2 twice in a batch of 3 inputs", e.getMessage());
+
+        CachingEmbeddingModel outOfRange = new CachingEmbeddingModel(withIndexes(0, 1, 5), () -> cache);
+        e = assertThrows(IllegalStateException.class, () -> outOfRange.call(new EmbeddingRequest(texts, null)));
+        assertEquals("Embedding model returned index 5 for a batch of 3 inputs", e.getMessage());
+
+        CachingEmbeddingModel tooFew = new CachingEmbeddingModel(withIndexes(0), () -> cache);
+        e = assertThrows(IllegalStateException.class, () -> tooFew.call(new EmbeddingRequest(texts, null)));
+        assertEquals("Embedding model returned 1 vectors for 3 inputs", e.getMessage());
+
+        model.call(new EmbeddingRequest(texts, null));
+        assertEquals(1, delegate.calls.get(), "A rejected response must not leave vectors in the cache");
+    }
+
+    @Test
+    void testKeyDependsOnModelName() {
+        EmbeddingCache other = new EmbeddingCache(
+                mock(EmbeddingCacheRepository.class), "text-embedding-3-small", 100, false);
+
+        assertEquals(cache.keyFor("EBITDA margin"), cache.keyFor(" EBITDA\nmargin"));
+        assertNotEquals(cache.keyFor("EBITDA margin"), other.keyFor("EBITDA margin"));
+    }
+}
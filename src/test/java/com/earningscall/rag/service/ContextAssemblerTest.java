@@ -0,0 +1,77 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextAssemblerTest {
+
+    private static final UUID Q3 = UUID.randomUUID();
+    private static final UUID Q4 = UUID.randomUUID();
+
+    private final TokenCounter tokenCounter = new TokenCounter("cl100k_base");
+
+    @Test
+    void testNeighbouringChunksMergeWithoutRepeatingTheOverlap() {
+        List<VectorStorageService.RetrievedChunk> chunks = List.of(
+                chunk(Q3, "q3.pdf", 4, 2, "Revenue grew 12% to $4.2 billion. Gross margin expanded 150 basis points."),
+                chunk(Q3, "q3.pdf", 3, 1, "Welcome to the call. Revenue grew 12% to $4.2 billion."));
+
+        ContextAssembler.AssembledContext context = new ContextAssembler(tokenCounter, 3000).assemble(chunks);
+
+        assertEquals("[Document: q3.pdf, Pages: 1-2]\nWelcome to the call. Revenue grew 12% to $4.2 billion. "
+                + "Gross margin expanded 150 basis points.\n", context.text());
+        assertEquals(chunks, context.chunks());
+    }
+
+    @Test
+    void testPassagesFollowRetrievalOrder() {
+        List<VectorStorageService.RetrievedChunk> chunks = List.of(
+                chunk(Q4, "q4.pdf", 9, 5, "Full-year guidance was raised."),
+                chunk(Q3, "q3.pdf", 2, 1, "Buybacks totalled $500 million."));
+
+        ContextAssembler.AssembledContext context = new ContextAssembler(tokenCounter, 3000).assemble(chunks);
+
+        assertEquals("[Document: q4.pdf, Page: 5]\nFull-year guidance was raised.\n"
+                + ContextAssembler.SEPARATOR
+                + "[Document: q3.pdf, Page: 1]\nBuybacks totalled $500 million.\n", context.text());
+    }
+
+    @Test
+    void testPassagesBeyondTheBudgetAreLeftOut() {
+        String filler = "Operating expenses were flat as the company held headcount steady. ".repeat(20);
+        List<VectorStorageService.RetrievedChunk> chunks = List.of(
+                chunk(Q3, "q3.pdf", 0, 1, "Revenue grew 12%."),
+                chunk(Q3, "q3.pdf", 5, 3, filler),
+                chunk(Q4, "q4.pdf", 2, 1, "Guidance was raised."));
+
+        ContextAssembler.AssembledContext context = new ContextAssembler(tokenCounter, 60).assemble(chunks);
+
+        // The long passage does not fit, the shorter one ranked after it still does
+        assertEquals(List.of(chunks.get(0), chunks.get(2)), context.chunks());
+        assertFalse(context.text().contains("Operating expenses"));
+        assertTrue(context.tokens() <= 60);
+    }
+
+    @Test
+    void testOverlapNeedsMoreThanACoincidentalMatch() {
+        assertEquals(0, ContextAssembler.overlap("Revenue grew 12%.", "%. Margins"));
+        assertEquals(11, ContextAssembler.overlap("Welcome. Revenue up.", "Revenue up. Margins"));
+    }
+
+    private static VectorStorageService.RetrievedChunk chunk(UUID documentId, String documentName, int chunkIndex,
+                                                             int pageNumber, String text) {
+        return VectorStorageService.RetrievedChunk.builder()
+                .text(text)
+                .documentId(documentId)
+                .documentName(documentName)
+                .chunkIndex(chunkIndex)
+                .pageNumber(pageNumber)
+                .similarityScore(0.8)
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingBatcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testPlanRespectsInputAndTokenLimits() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(new FakeEmbeddingModel(0), 3, 100, executor, metrics);
+
+        // 40 chars ~ 11 estimated tokens each, 200 chars ~ 51
+        List<String> texts = List.of(
+                "a".repeat(40), "b".repeat(40), "c".repeat(40), "d".repeat(40),
+                "e".repeat(200), "f".repeat(200), "g".repeat(1000));
+
+        List<EmbeddingBatcher.Batch> batches = batcher.plan(texts);
+
+        assertEquals(List.of(3, 2, 1, 1), batches.stream().map(b -> b.texts().size()).toList());
+        assertEquals(List.of(0, 3, 5, 6), batches.stream().map(EmbeddingBatcher.Batch::offset).toList());
+    }
+
+    @Test
+    void testEmbedAllReturnsVectorsInInputOrder() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(20);
+        EmbeddingBatcher batcher = new EmbeddingBatcher(model, 8, 10_000, executor, metrics);
+
+        List<String> texts = IntStream.range(0, 100).mapToObj(i -> "chunk " + i).toList();
+
+        List<float[]> vectors = batcher.embedAll(texts);
+
+        assertEquals(texts.size(), vectors.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertArrayEquals(FakeEmbeddingModel.vectorFor(texts.get(i)), vectors.get(i));
+        }
+        assertEquals(13, model.calls.get(), "100 texts at 8 per batch should take 13 calls");
+        assertTrue(model.maxInFlight.get() > 1, "Batches should run concurrently");
+        assertTrue(model.maxInFlight.get() <= 4, "In-flight batches are bounded by the executor");
+    }
+
+    @Test
+    void testEmbedAllPropagatesModelFailure() {
+        EmbeddingModel failing = new FakeEmbeddingModel(0) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                throw new IllegalStateException("rate limited");
+            }
+        };
+        EmbeddingBatcher batcher = new EmbeddingBatcher(failing, 2, 10_000, executor, metrics);
+
+        List<String> texts = List.of("a", "b", "c", "d");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> batcher.embedAll(texts));
+        assertEquals("rate limited", e.getMessage());
+    }
+
+    @Test
+    void testEmbedAllPlacesVectorsByReportedIndex() {
+        EmbeddingModel reversed = new FakeEmbeddingModel(0) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<String> inputs = request.getInstructions();
+                List<Embedding> embeddings = new ArrayList<>();
+                for (int i = inputs.size() - 1; i >= 0; i--) {
+                    embeddings.add(new Embedding(vectorFor(inputs.get(i)), i));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+        };
+        EmbeddingBatcher batcher = new EmbeddingBatcher(reversed, 3, 10_000, executor, metrics);
+
+        List<String> texts = List.of("a", "bb", "ccc", "dddd");
+        List<float[]> vectors = batcher.embedAll(texts);
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertArrayEquals(FakeEmbeddingModel.vectorFor(texts.get(i)), vectors.get(i));
+        }
+    }
+
+    @Test
+    void testEmbedAllRejectsDuplicateOrOutOfRangeIndexes() {
+        List<String> texts = List.of("a", "b", "c");
+
+        EmbeddingBatcher duplicate = new EmbeddingBatcher(withIndexes(0, 1, 1), 3, 10_000, executor, metrics);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> duplicate.embedAll(texts));
+        assertEquals("Embedding model returned index 1 twice in a batch of 3 inputs", e.getMessage());
+
+        EmbeddingBatcher outOfRange = new EmbeddingBatcher(withIndexes(0, 1, 3), 3, 10_000, executor, metrics);
+        e = assertThrows(IllegalStateException.class, () -> outOfRange.embedAll(texts));
+        assertEquals("Embedding model returned index 3 for a batch of 3 inputs", e.getMessage());
+
+        EmbeddingBatcher tooFew = new EmbeddingBatcher(withIndexes(0, 1), 3, 10_000, executor, metrics);
+        e = assertThrows(IllegalStateException.class, () -> tooFew.embedAll(texts));
+        assertEquals("Embedding model returned 2 vectors for 3 inputs", e.getMessage());
+    }
+
+    /**
+     * A model that answers every request with vectors at the given indexes
+     */
+    static EmbeddingModel withIndexes(int... indexes) {
+        return new FakeEmbeddingModel(0) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                List<Embedding> embeddings = new ArrayList<>();
+                for (int index : indexes) {
+                    embeddings.add(new Embedding(new float[]{index}, index));
+                }
+                return new EmbeddingResponse(embeddings);
+            }
+        };
+    }
+
+    /**
+     * Local stand-in for the OpenAI embedding model that simulates per-call latency
+     */
+    static class FakeEmbeddingModel implements EmbeddingModel {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        private final long latencyMs;
+
+        FakeEmbeddingModel(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        static float[] vectorFor(String text) {
+            return new float[]{text.hashCode(), text.length()};
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            calls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> inputs = request.getInstructions();
+            for (int i = 0; i < inputs.size(); i++) {
+                embeddings.add(new Embedding(vectorFor(inputs.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectorFor(document.getContent());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.config.AsyncConfig;
+import com.earningscall.rag.config.CountingAbortPolicy;
+import com.earningscall.rag.util.PdfTextExtractor;
+import com.earningscall.rag.util.PipelineMetrics;
+import com.earningscall.rag.util.TestPdfs;
+import com.earningscall.rag.util.TextChunker;
+import com.earningscall.rag.util.TokenCounter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IngestionPipelineTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @TempDir
+    Path tempDir;
+
+    private PdfTextExtractor extractor;
+    private TextChunker chunker;
+    private EmbeddingCache embeddingCache;
+    private VectorStorageService vectorStorageService;
+    private IngestionProgressTracker progressTracker;
+    private AnswerCache answerCache;
+    private IngestionPipeline pipeline;
+    private Path pdf;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pdf = TestPdfs.generate(tempDir.resolve("transcript.pdf"), 12);
+
+        extractor = new PdfTextExtractor(executor, metrics);
+        ReflectionTestUtils.setField(extractor, "pagesPerTask", 4);
+        ReflectionTestUtils.setField(extractor, "maxRangesInFlight", 2);
+        ReflectionTestUtils.setField(extractor, "tempFileCache", true);
+
+        chunker = new TextChunker(new TokenCounter("cl100k_base"));
+        ReflectionTestUtils.setField(chunker, "unit", "chars");
+        ReflectionTestUtils.setField(chunker, "chunkSize", 300);
+        ReflectionTestUtils.setField(chunker, "overlapSize", 50);
+
+        embeddingCache = mock(EmbeddingCache.class);
+        when(embeddingCache.stats()).thenReturn(new EmbeddingCache.CacheStats(0, 0, 0, 0, 0));
+
+        vectorStorageService = mock(VectorStorageService.class);
+        progressTracker = new IngestionProgressTracker();
+        answerCache = spy(new AnswerCache(true, 0.95, 10, Duration.ofHours(1)));
+
+        pipeline = newPipeline(executor);
+    }
+
+    private IngestionPipeline newPipeline(Executor stageExecutor) {
+        IngestionPipeline pipeline = new IngestionPipeline(extractor, chunker, vectorStorageService, embeddingCache,
+                answerCache, progressTracker,
+                metrics, stageExecutor);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 3);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        return pipeline;
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testStoresEveryChunkInOrderedBatches() throws Exception {
+        List<TextChunker.TextChunk> stored = new ArrayList<>();
+        when(vectorStorageService.storeChunks(any(), anyList())).thenAnswer(invocation -> {
+            List<TextChunker.TextChunk> batch = invocation.getArgument(1);
+            assertTrue(batch.size() <= 3);
+            stored.addAll(batch);
+            return batch.stream().map(chunk -> UUID.randomUUID().toString()).toList();
+        });
+
+        UUID documentId = UUID.randomUUID();
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                documentId, "transcript.pdf", "Acme", null, null);
+        int count = pipeline.ingest(source, pdf.toFile());
+
+        assertTrue(count > 3);
+        assertEquals(count, stored.size());
+        for (int i = 0; i < stored.size(); i++) {
+            assertEquals(i, stored.get(i).getChunkIndex());
+        }
+        verify(vectorStorageService, atLeast(2)).embedChunks(anyList());
+        assertTrue(progressTracker.get(documentId).isEmpty());
+    }
+
+    @Test
+    void testWriteFailureAbortsAndRemovesPartialChunks() throws Exception {
+        when(vectorStorageService.storeChunks(any(), anyList()))
+                .thenReturn(List.of("first"))
+                .thenThrow(new IllegalStateException("database unavailable"));
+
+        UUID documentId = UUID.randomUUID();
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                documentId, "transcript.pdf", "Acme", null, null);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> pipeline.ingest(source, pdf.toFile()));
+        assertEquals("database unavailable", e.getMessage());
+
+        verify(vectorStorageService).deleteChunks(eq(documentId), eq(List.of("first")));
+        assertTrue(progressTracker.get(documentId).isEmpty());
+    }
+
+    @Test
+    void testFailedCleanupStillInvalidatesCachedAnswers() throws Exception {
+        when(vectorStorageService.storeChunks(any(), anyList()))
+                .thenReturn(List.of("first"))
+                .thenThrow(new IllegalStateException("database unavailable"));
+        doThrow(new IllegalStateException("still unavailable"))
+                .when(vectorStorageService).deleteChunks(any(), anyList());
+
+        UUID documentId = UUID.randomUUID();
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                documentId, "transcript.pdf", "Acme", null, null);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> pipeline.ingest(source, pdf.toFile()));
+        assertEquals("database unavailable", e.getMessage());
+
+        InOrder order = inOrder(vectorStorageService, answerCache);
+        order.verify(vectorStorageService).deleteChunks(eq(documentId), eq(List.of("first")));
+        order.verify(answerCache).invalidateDocument(documentId, "Acme");
+    }
+
+    @Test
+    void testRecordsExtractionAndChunkingPerPage() throws Exception {
+        when(vectorStorageService.storeChunks(any(), anyList())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(1)).stream().map(chunk -> UUID.randomUUID().toString()).toList());
+
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                UUID.randomUUID(), "transcript.pdf", null, null, null);
+        pipeline.ingest(source, pdf.toFile());
+
+        assertEquals(12, stageTimer(PipelineMetrics.EXTRACTION).count());
+        assertEquals(12, stageTimer(PipelineMetrics.CHUNKING).count());
+    }
+
+    @Test
+    void testRejectedStageSubmissionStopsTheStartedStage() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        CountDownLatch startedStageExited = new CountDownLatch(1);
+        Executor rejectsSecond = task -> {
+            if (submitted.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("no stage thread available");
+            }
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    startedStageExited.countDown();
+                }
+            });
+        };
+
+        UUID documentId = UUID.randomUUID();
+        VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                documentId, "transcript.pdf", "Acme", null, null);
+        assertThrows(RejectedExecutionException.class, () -> newPipeline(rejectsSecond).ingest(source, pdf.toFile()));
+
+        assertTrue(startedStageExited.await(5, TimeUnit.SECONDS));
+        verify(vectorStorageService, never()).embedChunks(anyList());
+        assertTrue(progressTracker.get(documentId).isEmpty());
+    }
+
+    @Test
+    void testBackToBackIngestionsFitTheStagePool() throws Exception {
+        when(vectorStorageService.storeChunks(any(), anyList())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(1)).stream().map(chunk -> UUID.randomUUID().toString()).toList());
+
+        AsyncConfig config = new AsyncConfig();
+        ReflectionTestUtils.setField(config, "ingestWorkers", 1);
+        ThreadPoolTaskExecutor stageExecutor = config.ingestionIoExecutor();
+        try {
+            IngestionPipeline backToBack = newPipeline(stageExecutor);
+            for (int i = 0; i < 20; i++) {
+                VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+                        UUID.randomUUID(), "transcript.pdf", "Acme", null, null);
+                assertTrue(backToBack.ingest(source, pdf.toFile()) > 0);
+            }
+            CountingAbortPolicy policy =
+                    (CountingAbortPolicy) stageExecutor.getThreadPoolExecutor().getRejectedExecutionHandler();
+            assertEquals(0, policy.getRejectedCount());
+        } finally {
+            stageExecutor.shutdown();
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return registry.get(PipelineMetrics.STAGE_DURATION)
+                .tags("stage", stage, "outcome", "success")
+                .timer();
+    }
+}
@@ -0,0 +1,65 @@
+package com.earningscall.rag.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaximalMarginalRelevanceTest {
+
+    private static final long BUDGET = 1_000_000_000L;
+
+    @Test
+    void testNearDuplicateIsDroppedForADifferentPassage() {
+        List<MaximalMarginalRelevance.Ranked> candidates = List.of(
+                ranked("a", "doc1", 0, 0.90, 1f, 0f, 0f),
+                ranked("b", "doc2", 7, 0.89, 1f, 0.01f, 0f),
+                ranked("c", "doc3", 2, 0.80, 0f, 1f, 0f));
+
+        List<MaximalMarginalRelevance.Ranked> selected =
+                MaximalMarginalRelevance.select(candidates, 2, 0.7, 0.95, BUDGET);
+
+        assertEquals(List.of("a", "c"), ids(selected));
+    }
+
+    @Test
+    void testNeighbouringChunkFallsBehindOtherDocuments() {
+        List<MaximalMarginalRelevance.Ranked> candidates = List.of(
+                ranked("a", "doc1", 3, 0.90, 1f, 0f, 0f),
+                ranked("b", "doc1", 4, 0.88, 0.6f, 0.8f, 0f),
+                ranked("c", "doc2", 0, 0.70, 0f, 0f, 1f));
+
+        List<MaximalMarginalRelevance.Ranked> selected =
+                MaximalMarginalRelevance.select(candidates, 3, 0.7, 0.95, BUDGET);
+
+        // The neighbour is kept, just ranked after the other document's chunk
+        assertEquals(List.of("a", "c", "b"), ids(selected));
+    }
+
+    @Test
+    void testSpentBudgetKeepsRelevanceOrder() {
+        List<MaximalMarginalRelevance.Ranked> candidates = List.of(
+                ranked("a", "doc1", 0, 0.90, 1f, 0f, 0f),
+                ranked("b", "doc2", 7, 0.89, 1f, 0.01f, 0f),
+                ranked("c", "doc3", 2, 0.80, 0f, 1f, 0f));
+
+        List<MaximalMarginalRelevance.Ranked> selected =
+                MaximalMarginalRelevance.select(candidates, 2, 0.7, 0.95, 0L);
+
+        assertEquals(List.of("a", "b"), ids(selected));
+    }
+
+    private static MaximalMarginalRelevance.Ranked ranked(String id, String documentId, int chunkIndex,
+                                                          double relevance, float... embedding) {
+        Document document = new Document(id, "text " + id, Map.of("documentId", documentId, "chunkIndex", chunkIndex));
+        document.setEmbedding(embedding);
+        return new MaximalMarginalRelevance.Ranked(document, relevance);
+    }
+
+    private static List<String> ids(List<MaximalMarginalRelevance.Ranked> selected) {
+        return selected.stream().map(ranked -> ranked.document().getId()).toList();
+    }
+}
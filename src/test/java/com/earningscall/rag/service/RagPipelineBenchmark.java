@@ -0,0 +1,171 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.util.PipelineMetrics;
+import com.earningscall.rag.util.TextChunker;
+import com.earningscall.rag.util.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU work around the network calls of ingestion and answering: turning
+ * a batch of chunks into vector store documents (storeChunks against a store
+ * that drops them), planning and fanning out embedding batches (against a
+ * model that answers instantly), and assembling the LLM context from the
+ * retrieved chunks, some of them neighbours that overlap.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=RagPipelineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RagPipelineBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+    private static final int CHUNKS = 64;
+    private static final int RETRIEVED = 5;
+
+    private final VectorStorageService.ChunkSource source = new VectorStorageService.ChunkSource(
+            UUID.randomUUID(), "acme-q3-2024.pdf", "Acme Corp", 2024, 3);
+
+    private ExecutorService executor;
+    private VectorStorageService vectorStorageService;
+    private EmbeddingBatcher embeddingBatcher;
+    private ContextAssembler contextAssembler;
+    private List<TextChunker.TextChunk> chunks;
+    private List<String> texts;
+    private List<VectorStorageService.RetrievedChunk> retrieved;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+        vectorStorageService = new VectorStorageService(new DiscardingVectorStore(), null, null, executor, metrics);
+        embeddingBatcher = new EmbeddingBatcher(new InstantEmbeddingModel(), 16, 8_000, executor, metrics);
+        contextAssembler = new ContextAssembler(new TokenCounter("cl100k_base"), 3000);
+
+        String text = ("CFO: Revenue for the quarter was $4.2 billion, up 12% year over year. "
+                + "Gross margin expanded 150 basis points to 41.3%, driven by mix. ").repeat(6);
+        chunks = new ArrayList<>(CHUNKS);
+        for (int i = 0; i < CHUNKS; i++) {
+            chunks.add(TextChunker.TextChunk.builder()
+                    .text(text)
+                    .chunkIndex(i)
+                    .pageNumber(i / 4 + 1)
+                    .metadata(Map.of("pageNumber", i / 4 + 1, "chunkIndex", i))
+                    .build());
+        }
+        texts = chunks.stream().map(TextChunker.TextChunk::getText).toList();
+
+        // 800-character chunks overlapping by 150, as the chunker cuts them; 0-2 are neighbours
+        StringBuilder transcript = new StringBuilder();
+        for (int sentence = 0; transcript.length() < 10 * 650 + 800; sentence++) {
+            transcript.append("Segment ").append(sentence).append(" revenue grew ").append(sentence % 17)
+                    .append("% on pricing and volume. ");
+        }
+        int[] chunkIndexes = {0, 1, 2, 6, 9};
+        retrieved = new ArrayList<>(RETRIEVED);
+        for (int i = 0; i < RETRIEVED; i++) {
+            int start = chunkIndexes[i] * 650;
+            retrieved.add(VectorStorageService.RetrievedChunk.builder()
+                    .text(transcript.substring(start, start + 800))
+                    .documentId(source.documentId())
+                    .documentName(source.documentName())
+                    .pageNumber(chunkIndexes[i] / 2 + 1)
+                    .chunkIndex(chunkIndexes[i])
+                    .similarityScore(0.8)
+                    .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<String> storeChunks() {
+        return vectorStorageService.storeChunks(source, chunks);
+    }
+
+    @Benchmark
+    public void embedAll(Blackhole blackhole) {
+        blackhole.consume(embeddingBatcher.embedAll(texts));
+    }
+
+    @Benchmark
+    public ContextAssembler.AssembledContext assembleContext() {
+        return contextAssembler.assemble(retrieved);
+    }
+
+    /**
+     * Stands in for the OpenAI model: one freshly allocated vector per input, no latency
+     */
+    private static class InstantEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> inputs = request.getInstructions();
+            List<Embedding> embeddings = new ArrayList<>(inputs.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                float[] vector = new float[DIMENSIONS];
+                vector[0] = inputs.get(i).length();
+                embeddings.add(new Embedding(vector, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return new float[DIMENSIONS];
+        }
+    }
+
+    /**
+     * Accepts and drops documents, so storeChunks measures only the conversion
+     */
+    private static class DiscardingVectorStore implements VectorStore {
+
+        @Override
+        public void add(List<Document> documents) {
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> idList) {
+            return Optional.of(true);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
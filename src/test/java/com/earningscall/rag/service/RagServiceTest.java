@@ -0,0 +1,297 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.model.dto.AnswerStreamEvent;
+import com.earningscall.rag.model.dto.BatchAnswerEvent;
+import com.earningscall.rag.model.dto.QuestionRequest;
+import com.earningscall.rag.model.dto.QuestionResponse;
+import com.earningscall.rag.util.PipelineMetrics;
+import com.earningscall.rag.util.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+class RagServiceTest {
+
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(8, 100, "rag-test");
+    private final AtomicInteger generations = new AtomicInteger();
+
+    private VectorStorageService vectorStorageService;
+    private EmbeddingService embeddingService;
+    private ChatClient.Builder chatClientBuilder;
+    private RagService ragService;
+
+    @BeforeEach
+    void setUp() {
+        vectorStorageService = mock(VectorStorageService.class);
+        when(vectorStorageService.search(anyString(), any(), any())).thenAnswer(invocation ->
+                retrieval(invocation.getArgument(0)));
+
+        embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.generateEmbeddingsBatch(any())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(0)).stream().map(question -> new float[]{1f, 0f}).toList());
+        when(embeddingService.generateEmbedding(anyString())).thenReturn(new float[]{1f, 0f});
+
+        ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(invocation -> {
+            generations.incrementAndGet();
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("Revenue grew 12%."))));
+        });
+        when(chatClient.prompt(any(Prompt.class)).stream().chatResponse()).thenAnswer(invocation -> Flux.just(
+                new ChatResponse(List.of(new Generation(new AssistantMessage("Revenue ")))),
+                new ChatResponse(List.of(new Generation(new AssistantMessage("grew 12%."))))));
+        chatClientBuilder = mock(ChatClient.Builder.class);
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+
+        ragService = newService(new AnswerCache(false, 0.95, 10, Duration.ofHours(1)));
+    }
+
+    private RagService newService(AnswerCache answerCache) {
+        TokenCounter tokenCounter = new TokenCounter("cl100k_base");
+        RagService service = new RagService(vectorStorageService, chatClientBuilder, embeddingService,
+                answerCache, new ContextAssembler(tokenCounter, 3000),
+                new PipelineMetrics(new SimpleMeterRegistry()), tokenCounter, scheduler);
+        ReflectionTestUtils.setField(service, "batchSearchConcurrency", 8);
+        ReflectionTestUtils.setField(service, "batchLlmConcurrency", 4);
+        return service;
+    }
+
+    @AfterEach
+    void shutdown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void testBatchEmbedsOnceAndPassesEachVectorToRetrieval() {
+        List<QuestionRequest> requests = List.of(question("What was revenue?"), question("What was margin?"));
+        List<float[]> vectors = List.of(new float[]{1f, 0f}, new float[]{0f, 1f});
+        when(embeddingService.generateEmbeddingsBatch(List.of("What was revenue?", "What was margin?")))
+                .thenReturn(vectors);
+
+        ragService.answerBatch(requests).collectList().block(Duration.ofSeconds(10));
+
+        verify(embeddingService).generateEmbeddingsBatch(any());
+        verify(embeddingService, never()).generateEmbedding(anyString());
+        verify(vectorStorageService).search(eq("What was revenue?"), any(), same(vectors.get(0)));
+        verify(vectorStorageService).search(eq("What was margin?"), any(), same(vectors.get(1)));
+    }
+
+    @Test
+    void testBatchAnswersEveryQuestionByIndexThenDone() {
+        List<QuestionRequest> requests = List.of(
+                question("What was revenue?"), question("What was margin?"), question("What was guidance?"));
+
+        List<BatchAnswerEvent> events = ragService.answerBatch(requests).collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(4, events.size());
+        BatchAnswerEvent done = events.get(3);
+        assertEquals(BatchAnswerEvent.Type.DONE, done.getType());
+        assertEquals(3, done.getAnswered());
+        assertEquals(0, done.getFailed());
+
+        Map<Integer, BatchAnswerEvent> answers = events.subList(0, 3).stream()
+                .collect(Collectors.toMap(BatchAnswerEvent::getIndex, Function.identity()));
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(BatchAnswerEvent.Type.ANSWER, answers.get(i).getType());
+            assertEquals(requests.get(i).getQuestion(), answers.get(i).getQuestion());
+            assertEquals("Revenue grew 12%.", answers.get(i).getResponse().getAnswer());
+        }
+    }
+
+    @Test
+    void testBatchFailureOnlyFailsItsQuestion() {
+        when(vectorStorageService.search(eq("Why did it fail?"), any(), any()))
+                .thenThrow(new IllegalStateException("database unavailable"));
+        List<QuestionRequest> requests = List.of(
+                question("What was revenue?"), question("Why did it fail?"), question("What was margin?"));
+
+        List<BatchAnswerEvent> events = ragService.answerBatch(requests).collectList().block(Duration.ofSeconds(10));
+
+        Map<Integer, BatchAnswerEvent> byIndex = events.stream()
+                .filter(event -> event.getType() != BatchAnswerEvent.Type.DONE)
+                .collect(Collectors.toMap(BatchAnswerEvent::getIndex, Function.identity()));
+        assertEquals(BatchAnswerEvent.Type.ANSWER, byIndex.get(0).getType());
+        assertEquals(BatchAnswerEvent.Type.ERROR, byIndex.get(1).getType());
+        assertEquals("database unavailable", byIndex.get(1).getError());
+        assertEquals(BatchAnswerEvent.Type.ANSWER, byIndex.get(2).getType());
+
+        BatchAnswerEvent done = events.get(events.size() - 1);
+        assertEquals(2, done.getAnswered());
+        assertEquals(1, done.getFailed());
+    }
+
+    @Test
+    void testEmbeddingFailureFailsEveryQuestionThenDone() {
+        doThrow(new IllegalStateException("rate limited")).when(embeddingService).generateEmbeddingsBatch(any());
+        List<QuestionRequest> requests = List.of(question("What was revenue?"), question("What was margin?"));
+
+        List<BatchAnswerEvent> events = ragService.answerBatch(requests).collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(3, events.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(BatchAnswerEvent.Type.ERROR, events.get(i).getType());
+            assertEquals(i, events.get(i).getIndex());
+            assertEquals(requests.get(i).getQuestion(), events.get(i).getQuestion());
+            assertEquals("rate limited", events.get(i).getError());
+        }
+        BatchAnswerEvent done = events.get(2);
+        assertEquals(BatchAnswerEvent.Type.DONE, done.getType());
+        assertEquals(0, done.getAnswered());
+        assertEquals(2, done.getFailed());
+        verify(vectorStorageService, never()).search(anyString(), any(), any());
+    }
+
+    @Test
+    void testDuplicateQuestionsShareOneGenerationWithTheirOwnTimings() {
+        QuestionRequest first = question("What was revenue?");
+        QuestionRequest second = question("What was revenue?");
+        first.setIncludeTimings(true);
+        second.setIncludeTimings(true);
+
+        List<BatchAnswerEvent> events = ragService.answerBatch(List.of(first, second, question("What was margin?")))
+                .collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(2, generations.get());
+        List<QuestionResponse.StageTimings> timings = events.stream()
+                .filter(event -> event.getType() == BatchAnswerEvent.Type.ANSWER && event.getIndex() < 2)
+                .map(event -> event.getResponse().getTimings())
+                .toList();
+        assertEquals(2, timings.size());
+        assertNotSame(timings.get(0), timings.get(1));
+        for (QuestionResponse.StageTimings stageTimings : timings) {
+            assertNotNull(stageTimings.getRetrievalMs());
+        }
+        // Only the question that ran the generation reports its cost
+        List<QuestionResponse.StageTimings> generating = timings.stream()
+                .filter(stageTimings -> stageTimings.getLlmTotalMs() != null)
+                .toList();
+        assertEquals(1, generating.size());
+        assertNotNull(generating.get(0).getPromptTokens());
+        QuestionResponse.StageTimings reusing = timings.get(timings.get(0) == generating.get(0) ? 1 : 0);
+        assertNull(reusing.getPromptTokens());
+        assertNull(reusing.getCompletionTokens());
+    }
+
+    @Test
+    void testTimingsOnlyWhenRequested() {
+        assertNull(ragService.answerQuestion(question("What was revenue?")).getTimings());
+
+        QuestionRequest request = question("What was revenue?");
+        request.setIncludeTimings(true);
+        QuestionResponse.StageTimings timings = ragService.answerQuestion(request).getTimings();
+
+        assertNotNull(timings);
+        assertNotNull(timings.getQueryEmbeddingMs());
+        assertNotNull(timings.getVectorSearchMs());
+        assertNotNull(timings.getRetrievalMs());
+        assertNotNull(timings.getContextBuildMs());
+        assertNotNull(timings.getLlmTotalMs());
+        assertNotNull(timings.getPromptTokens());
+        // First tokens are only measured when streaming
+        assertNull(timings.getLlmFirstTokenMs());
+        assertNull(timings.getLexicalSearchMs());
+        assertNull(timings.getRerankMs());
+    }
+
+    @Test
+    void testCachedAnswersDoNotCarryTheTimingsOfTheRequestThatFilledTheCache() {
+        RagService cachingService = newService(new AnswerCache(true, 0.95, 10, Duration.ofHours(1)));
+        QuestionRequest first = question("What was revenue?");
+        first.setIncludeTimings(true);
+        assertNotNull(cachingService.answerQuestion(first).getTimings().getLlmTotalMs());
+
+        QuestionResponse cached = cachingService.answerQuestion(question("What was revenue?"));
+        assertTrue(cached.getCached());
+        assertNull(cached.getTimings());
+
+        QuestionRequest timed = question("What was revenue?");
+        timed.setIncludeTimings(true);
+        QuestionResponse timedHit = cachingService.answerQuestion(timed);
+        assertTrue(timedHit.getCached());
+        assertNotNull(timedHit.getTimings().getQueryEmbeddingMs());
+        assertNull(timedHit.getTimings().getRetrievalMs());
+        assertNull(timedHit.getTimings().getLlmTotalMs());
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    void testStreamedDoneEventCarriesTheTimings() {
+        QuestionRequest request = question("What was revenue?");
+        request.setIncludeTimings(true);
+
+        List<AnswerStreamEvent> events = ragService.streamAnswer(request).collectList().block(Duration.ofSeconds(10));
+
+        AnswerStreamEvent done = events.get(events.size() - 1);
+        assertEquals(AnswerStreamEvent.Type.DONE, done.getType());
+        QuestionResponse.StageTimings timings = done.getTimings();
+        assertNotNull(timings);
+        assertNotNull(timings.getRetrievalMs());
+        assertNotNull(timings.getLlmFirstTokenMs());
+        assertTrue(timings.getLlmFirstTokenMs() <= timings.getLlmTotalMs());
+        assertNull(events.get(0).getTimings());
+
+        QuestionRequest untimed = question("What was revenue?");
+        List<AnswerStreamEvent> untimedEvents = ragService.streamAnswer(untimed).collectList()
+                .block(Duration.ofSeconds(10));
+        assertNull(untimedEvents.get(untimedEvents.size() - 1).getTimings());
+    }
+
+    @Test
+    void testSubMillisecondStagesAreNotRoundedToZero() {
+        when(vectorStorageService.search(anyString(), any(), any())).thenAnswer(invocation ->
+                new VectorStorageService.RetrievalResult(List.of(retrieval(invocation.getArgument(0)).chunks().get(0)),
+                        0.412, null, 0.037, 0.468, 0.8));
+        QuestionRequest request = question("What was revenue?");
+        request.setIncludeTimings(true);
+
+        QuestionResponse.StageTimings timings = ragService.answerQuestion(request).getTimings();
+
+        assertEquals(0.412, timings.getVectorSearchMs());
+        assertEquals(0.037, timings.getRerankMs());
+        assertEquals(0.468, timings.getRetrievalMs());
+        assertTrue(timings.getContextBuildMs() > 0.0);
+    }
+
+    private static QuestionRequest question(String text) {
+        return QuestionRequest.builder().question(text).build();
+    }
+
+    /**
+     * One chunk whose text follows the question, so distinct questions get distinct contexts
+     */
+    private static VectorStorageService.RetrievalResult retrieval(String question) {
+        VectorStorageService.RetrievedChunk chunk = VectorStorageService.RetrievedChunk.builder()
+                .text("Transcript passage about: " + question)
+                .documentId(UUID.nameUUIDFromBytes(question.getBytes()))
+                .documentName("acme-q3.pdf")
+                .pageNumber(1)
+                .chunkIndex(0)
+                .similarityScore(0.9)
+                .build();
+        return new VectorStorageService.RetrievalResult(List.of(chunk), 1.0, null, null, 1.0, 0.8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.earningscall.rag.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReciprocalRankFusionTest {
+
+    @Test
+    void testDocumentsInBothRankingsRiseToTheTop() {
+        List<Document> vector = List.of(doc("a", "vector"), doc("b", "vector"), doc("c", "vector"));
+        List<Document> lexical = List.of(doc("d", "lexical"), doc("c", "lexical"), doc("a", "lexical"));
+
+        List<ReciprocalRankFusion.Fused> fused = ReciprocalRankFusion.fuse(List.of(vector, lexical), 60, 3);
+
+        assertEquals(List.of("a", "c", "d"), fused.stream().map(f -> f.document().getId()).toList());
+        assertEquals(1.0 / 61 + 1.0 / 63, fused.get(0).score(), 1e-12);
+        // The vector leg's instance is kept for documents found by both legs
+        assertEquals("vector", fused.get(1).document().getMetadata().get("leg"));
+    }
+
+    @Test
+    void testSingleRankingKeepsItsOrder() {
+        List<Document> vector = List.of(doc("a", "vector"), doc("b", "vector"));
+
+        List<ReciprocalRankFusion.Fused> fused = ReciprocalRankFusion.fuse(List.of(vector, List.of()), 60, 5);
+
+        assertEquals(List.of("a", "b"), fused.stream().map(f -> f.document().getId()).toList());
+    }
+
+    private static Document doc(String id, String leg) {
+        return new Document(id, "text " + id, Map.of("leg", leg));
+    }
+}
@@ -0,0 +1,112 @@
+package com.earningscall.rag.service;
+
+import com.earningscall.rag.repository.ChunkTextSearchRepository;
+import com.earningscall.rag.util.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class VectorStorageServiceTest {
+
+    private static final UUID DOCUMENT_ID = UUID.randomUUID();
+    private static final VectorStorageService.SearchScope UNSCOPED =
+            new VectorStorageService.SearchScope(null, null, null, null);
+
+    private VectorStore vectorStore;
+    private ChunkTextSearchRepository textSearchRepository;
+    private VectorStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = mock(VectorStore.class);
+        textSearchRepository = mock(ChunkTextSearchRepository.class);
+        service = new VectorStorageService(vectorStore, textSearchRepository, mock(EmbeddingService.class),
+                Runnable::run, new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "topK", 5);
+        ReflectionTestUtils.setField(service, "similarityThreshold", 0.7);
+        ReflectionTestUtils.setField(service, "hybridEnabled", true);
+        ReflectionTestUtils.setField(service, "hybridCandidates", 20);
+        ReflectionTestUtils.setField(service, "rrfK", 60);
+        ReflectionTestUtils.setField(service, "rerankEnabled", false);
+        ReflectionTestUtils.setField(service, "adaptiveEnabled", true);
+        ReflectionTestUtils.setField(service, "adaptiveMaxDrop", 0.05);
+        ReflectionTestUtils.setField(service, "adaptiveMinChunks", 2);
+    }
+
+    @Test
+    void testTermMatchBelowTheVectorThresholdSurvivesFusion() {
+        Document revenue = chunk(0, "Revenue grew 12% in the quarter.", 0.10);
+        Document margin = chunk(1, "Gross margin expanded 150 basis points.", 0.12);
+        Document guidance = chunk(2, "We raise full-year guidance.", 0.14);
+        // Names the ticker asked about, but its embedding is far from the question's
+        Document ticker = chunk(3, "ACME (NYSE: ACM) closed the Initech deal.", 0.62);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(revenue, margin, guidance));
+        when(textSearchRepository.search(anyString(), any(), any(), anyInt())).thenReturn(List.of(ticker, margin));
+
+        VectorStorageService.RetrievalResult result = service.search("What did ACM say about revenue?", UNSCOPED,
+                new float[]{1f, 0f});
+
+        List<String> texts = result.chunks().stream().map(VectorStorageService.RetrievedChunk::getText).toList();
+        assertTrue(texts.contains(ticker.getContent()), "Term match was cut: " + texts);
+        assertEquals(4, texts.size());
+        VectorStorageService.RetrievedChunk tickerChunk = result.chunks().get(texts.indexOf(ticker.getContent()));
+        assertEquals(0.38, tickerChunk.getSimilarityScore(), 1e-9);
+        assertNotNull(tickerChunk.getFusedScore());
+    }
+
+    @Test
+    void testSharpDropAmongVectorScoresStillCuts() {
+        Document revenue = chunk(0, "Revenue grew 12% in the quarter.", 0.10);
+        Document margin = chunk(1, "Gross margin expanded 150 basis points.", 0.12);
+        Document unrelated = chunk(2, "Parking is available on level two.", 0.28);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(revenue, margin, unrelated));
+        when(textSearchRepository.search(anyString(), any(), any(), anyInt())).thenReturn(List.of());
+
+        VectorStorageService.RetrievalResult result = service.search("What was revenue?", UNSCOPED,
+                new float[]{1f, 0f});
+
+        assertEquals(List.of(revenue.getContent(), margin.getContent()),
+                result.chunks().stream().map(VectorStorageService.RetrievedChunk::getText).toList());
+    }
+
+    @Test
+    void testResultsWithoutDistanceKeepTheStoreOrder() {
+        ReflectionTestUtils.setField(service, "hybridEnabled", false);
+        Document first = chunk(0, "Revenue grew 12% in the quarter.", null);
+        Document second = chunk(1, "Gross margin expanded 150 basis points.", null);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(first, second));
+
+        VectorStorageService.RetrievalResult result = service.search("What was revenue?", UNSCOPED, null);
+
+        assertEquals(List.of(first.getContent(), second.getContent()),
+                result.chunks().stream().map(VectorStorageService.RetrievedChunk::getText).toList());
+        assertNull(result.chunks().get(0).getSimilarityScore());
+    }
+
+    private static Document chunk(int chunkIndex, String text, Double distance) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("documentId", DOCUMENT_ID.toString());
+        metadata.put("documentName", "acme-q3.pdf");
+        metadata.put("chunkIndex", chunkIndex);
+        metadata.put("pageNumber", chunkIndex + 1);
+        if (distance != null) {
+            metadata.put("distance", distance);
+        }
+        return new Document(UUID.randomUUID().toString(), text, metadata);
+    }
+}
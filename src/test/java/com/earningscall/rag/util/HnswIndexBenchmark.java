@@ -0,0 +1,99 @@
+package com.earningscall.rag.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Recall@10 and query latency of the HNSW graph against an exact scan, on
+ * clustered vectors shaped like text embeddings (1536 dimensions).
+ * Run with: mvn test -Dtest=HnswIndexBenchmark -Drag.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "rag.benchmark", matches = "true")
+class HnswIndexBenchmark {
+
+    private static final int VECTORS = 20_000;
+    private static final int DIMENSIONS = 1536;
+    private static final int CLUSTERS = 200;
+    private static final int QUERIES = 500;
+    private static final int K = 10;
+
+    @Test
+    void compareWithBruteForce() {
+        Random random = new Random(42);
+        float[][] centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = gaussian(random, 1.0f);
+        }
+
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+        long start = System.nanoTime();
+        for (int i = 0; i < VECTORS; i++) {
+            index.add(near(centroids[random.nextInt(CLUSTERS)], random));
+        }
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+        float[][] queries = new float[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = near(centroids[random.nextInt(CLUSTERS)], random);
+        }
+        List<List<Integer>> exact = new ArrayList<>(QUERIES);
+        for (float[] query : queries) {
+            exact.add(index.bruteForceSearch(query, K).stream().map(HnswIndex.Result::node).toList());
+        }
+
+        System.out.printf("HNSW over %d x %d-d vectors (M=16, efConstruction=100), built in %.1fs (%.0f inserts/s)%n",
+                VECTORS, DIMENSIONS, buildSeconds, VECTORS / buildSeconds);
+        System.out.printf("  brute force: %8.3f ms/query%n", bruteForceMillis(index, queries));
+        for (int ef : new int[]{16, 32, 64, 128, 256}) {
+            measure(index, queries, exact, ef); // warm-up
+            measure(index, queries, exact, ef);
+        }
+    }
+
+    private static void measure(HnswIndex index, float[][] queries, List<List<Integer>> exact, int ef) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < queries.length; q++) {
+            List<HnswIndex.Result> results = index.search(queries[q], K, ef, null);
+            for (HnswIndex.Result result : results) {
+                if (exact.get(q).contains(result.node())) {
+                    found++;
+                }
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / queries.length;
+        System.out.printf("  hnsw ef=%-4d %8.3f ms/query, recall@%d %.3f%n",
+                ef, millis, K, found / (double) (queries.length * K));
+    }
+
+    private static double bruteForceMillis(HnswIndex index, float[][] queries) {
+        for (float[] query : queries) {
+            index.bruteForceSearch(query, K);
+        }
+        long start = System.nanoTime();
+        for (float[] query : queries) {
+            index.bruteForceSearch(query, K);
+        }
+        return (System.nanoTime() - start) / 1e6 / queries.length;
+    }
+
+    private static float[] near(float[] centroid, Random random) {
+        float[] noise = gaussian(random, 0.6f);
+        for (int d = 0; d < DIMENSIONS; d++) {
+            noise[d] += centroid[d];
+        }
+        return noise;
+    }
+
+    private static float[] gaussian(Random random, float scale) {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = (float) random.nextGaussian() * scale;
+        }
+        return vector;
+    }
+}
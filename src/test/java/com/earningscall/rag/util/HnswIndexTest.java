@@ -0,0 +1,157 @@
+package com.earningscall.rag.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSearchMatchesBruteForceOnSmallIndex() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64);
+        for (int i = 0; i < 1_000; i++) {
+            index.add(randomVector(random));
+        }
+
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            List<Integer> exact = nodes(index.bruteForceSearch(query, 10));
+            found += nodes(index.search(query, 10, 64, null)).stream().filter(exact::contains).count();
+        }
+
+        assertTrue(found / 500.0 >= 0.9, "recall@10 was " + found / 500.0);
+    }
+
+    @Test
+    void testQuantizedSearchIsRescoredWithExactDistances() {
+        Random random = new Random(5);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, true);
+        for (int i = 0; i < 1_000; i++) {
+            index.add(randomVector(random));
+        }
+
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            List<HnswIndex.Result> exact = index.bruteForceSearch(query, 10);
+            List<HnswIndex.Result> approximate = index.search(query, 10, 64, null);
+            found += nodes(approximate).stream().filter(nodes(exact)::contains).count();
+            assertEquals(exact.get(0), approximate.get(0));
+        }
+
+        assertTrue(found / 500.0 >= 0.9, "recall@10 was " + found / 500.0);
+    }
+
+    @Test
+    void testClosestVectorComesFirst() {
+        HnswIndex index = new HnswIndex(3, 4, 16);
+        index.add(new float[]{1f, 0f, 0f});
+        index.add(new float[]{0f, 1f, 0f});
+        index.add(new float[]{0f, 0f, 1f});
+
+        List<HnswIndex.Result> results = index.search(new float[]{0.1f, 2f, 0f}, 3, 16, null);
+
+        assertEquals(1, results.get(0).node());
+        assertTrue(results.get(0).distance() < results.get(1).distance());
+    }
+
+    @Test
+    void testRemovedAndFilteredNodesAreNotReturned() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64);
+        float[] first = randomVector(random);
+        index.add(first);
+        for (int i = 1; i < 200; i++) {
+            index.add(randomVector(random));
+        }
+
+        index.remove(0);
+        assertEquals(199, index.liveCount());
+        assertFalse(nodes(index.search(first, 10, 64, null)).contains(0));
+
+        List<Integer> even = nodes(index.search(first, 10, 64, node -> node % 2 == 0));
+        assertEquals(10, even.size());
+        assertTrue(even.stream().allMatch(node -> node % 2 == 0 && node != 0));
+    }
+
+    @Test
+    void testSnapshotRoundTripKeepsResultsAndAcceptsInserts() throws Exception {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64);
+        for (int i = 0; i < 5_000; i++) {
+            index.add(randomVector(random));
+        }
+        index.remove(42);
+        float[] query = randomVector(random);
+
+        Path file = tempDir.resolve("hnsw.idx");
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file);
+
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.liveCount(), loaded.liveCount());
+        assertTrue(loaded.isRemoved(42));
+        assertEquals(index.search(query, 10, 64, null), loaded.search(query, 10, 64, null));
+
+        int added = loaded.add(query);
+        assertEquals(5_000, added);
+        assertEquals(added, loaded.search(query, 1, 64, null).get(0).node());
+    }
+
+    @Test
+    void testCompactionDropsTombstonesAndKeepsResults() {
+        Random random = new Random(13);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64);
+        for (int i = 0; i < 1_000; i++) {
+            index.add(randomVector(random));
+        }
+        for (int node = 0; node < 1_000; node += 3) {
+            index.remove(node);
+        }
+        assertEquals(334 / 1_000.0, index.removedFraction(), 1e-9);
+
+        HnswIndex.Compaction compaction = index.compact();
+        HnswIndex compacted = compaction.index();
+
+        assertEquals(666, compacted.size());
+        assertEquals(666, compacted.liveCount());
+        assertEquals(0.0, compacted.removedFraction());
+        int[] ordinals = compaction.ordinals();
+        assertEquals(-1, ordinals[0]);
+        assertEquals(0, ordinals[1]);
+        assertEquals(665, ordinals[998]);
+        assertArrayEquals(index.vector(998), compacted.vector(665), 1e-6f);
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<Integer> expected = nodes(index.bruteForceSearch(query, 10)).stream()
+                    .map(node -> ordinals[node])
+                    .toList();
+            assertEquals(expected, nodes(compacted.bruteForceSearch(query, 10)));
+        }
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Integer> nodes(List<HnswIndex.Result> results) {
+        return results.stream().map(HnswIndex.Result::node).toList();
+    }
+}
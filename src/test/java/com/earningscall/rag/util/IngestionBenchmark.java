@@ -0,0 +1,107 @@
+package com.earningscall.rag.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion front half on a generated transcript PDF: page text extraction
+ * (parallel and sequential) and chunking of the extracted pages in chars and
+ * tokens mode.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=IngestionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"12", "160"})
+    public int pages;
+
+    private Path directory;
+    private File pdf;
+    private ExecutorService executor;
+    private PdfTextExtractor extractor;
+    private List<PdfTextExtractor.PageContent> pageContents;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rag-bench");
+        pdf = TestPdfs.generate(directory.resolve("transcript.pdf"), pages).toFile();
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(workers);
+        extractor = new PdfTextExtractor(executor, new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(extractor, "pagesPerTask", 16);
+        ReflectionTestUtils.setField(extractor, "maxRangesInFlight", workers * 2);
+        ReflectionTestUtils.setField(extractor, "tempFileCache", true);
+
+        pageContents = extractor.extractText(pdf);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(pdf.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<PdfTextExtractor.PageContent> extractText() throws IOException {
+        return extractor.extractText(pdf);
+    }
+
+    @Benchmark
+    public List<PdfTextExtractor.PageContent> extractTextSequential() throws IOException {
+        return extractor.extractTextSequential(pdf);
+    }
+
+    @Benchmark
+    public List<TextChunker.TextChunk> chunkText(Chunking chunking) {
+        return chunking.chunker.chunkText(pageContents);
+    }
+
+    /**
+     * Chunker settings, kept apart so the extraction benchmarks do not run once per unit
+     */
+    @State(Scope.Benchmark)
+    public static class Chunking {
+
+        @Param({"chars", "tokens"})
+        public String unit;
+
+        private TextChunker chunker;
+
+        @Setup
+        public void setUp() {
+            boolean tokens = "tokens".equals(unit);
+            chunker = new TextChunker(new TokenCounter("cl100k_base"));
+            ReflectionTestUtils.setField(chunker, "unit", unit);
+            ReflectionTestUtils.setField(chunker, "chunkSize", tokens ? 200 : 800);
+            ReflectionTestUtils.setField(chunker, "overlapSize", tokens ? 40 : 150);
+        }
+    }
+}
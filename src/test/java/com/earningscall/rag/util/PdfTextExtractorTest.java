@@ -0,0 +1,47 @@
+package com.earningscall.rag.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfTextExtractorTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testParallelExtractionMatchesSequentialInPageOrder() throws Exception {
+        Path pdf = TestPdfs.generate(tempDir.resolve("transcript.pdf"), 23);
+
+        PdfTextExtractor extractor = new PdfTextExtractor(executor, new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(extractor, "pagesPerTask", 4);
+        ReflectionTestUtils.setField(extractor, "maxRangesInFlight", 2);
+        ReflectionTestUtils.setField(extractor, "tempFileCache", true);
+
+        List<PdfTextExtractor.PageContent> parallel = extractor.extractText(pdf.toFile());
+        List<PdfTextExtractor.PageContent> sequential = extractor.extractTextSequential(pdf.toFile());
+
+        assertEquals(23, parallel.size());
+        assertEquals(sequential, parallel);
+        for (int i = 0; i < parallel.size(); i++) {
+            assertEquals(i + 1, parallel.get(i).pageNumber());
+            assertTrue(parallel.get(i).text().startsWith("Page " + (i + 1) + " of the transcript."));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.earningscall.rag.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates synthetic earnings-call-like PDFs for extraction tests and benchmarks
+ */
+public final class TestPdfs {
+
+    private static final String[] LINES = {
+            "Operator: Good afternoon and welcome to the third quarter earnings call.",
+            "CFO: Revenue for the quarter was $4.2 billion, up 12% year over year.",
+            "Gross margin expanded 150 basis points to 41.3%, driven by mix.",
+            "Adjusted EBITDA was $910 million and free cash flow was $620 million.",
+            "We repurchased 3.1 million shares during the quarter.",
+            "CEO: We are raising full-year guidance to $16.8 to $17.0 billion.",
+            "Operator: Our next question comes from the line of an analyst at a bank.",
+    };
+
+    private TestPdfs() {
+    }
+
+    public static Path generate(Path target, int pageCount) throws IOException {
+        return generate(target, pageCount, "transcript");
+    }
+
+    /**
+     * The title is printed on every page, so PDFs with different titles have different bytes
+     */
+    public static Path generate(Path target, int pageCount, String title) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+
+            for (int pageNum = 1; pageNum <= pageCount; pageNum++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setLeading(13f);
+                    content.newLineAtOffset(50, 740);
+                    content.showText("Page " + pageNum + " of the " + title + ".");
+                    for (int line = 0; line < 50; line++) {
+                        content.newLine();
+                        content.showText(LINES[(pageNum + line) % LINES.length]);
+                    }
+                    content.endText();
+                }
+            }
+
+            document.save(target.toFile());
+        }
+        return target;
+    }
+}
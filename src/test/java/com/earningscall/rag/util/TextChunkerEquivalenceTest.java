@@ -0,0 +1,157 @@
+package com.earningscall.rag.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the single-pass chunker against the original split-based algorithm
+ */
+class TextChunkerEquivalenceTest {
+
+    private static final String[] WORDS = {
+            "revenue", "grew", "12%", "EBITDA", "margin", "guidance", "$4.2", "billion", "Q3", "operator",
+            "thank", "you.", "next", "question?", "yes!", "a", "the", "...", "!", "?", "."
+    };
+    private static final String[] SEPARATORS = {" ", " ", " ", "  ", "\n", "\t", " \r\n "};
+
+    @Test
+    void testExistingTestCasesProduceIdenticalChunks() {
+        assertEquivalent(List.of(page(1, "This is a test sentence. ".repeat(100))), 800, 150);
+        assertEquivalent(List.of(page(1, "This is a test document. It has multiple sentences. "
+                + "We want to ensure that chunking works correctly. "
+                + "Each chunk should maintain context.")), 800, 150);
+    }
+
+    @Test
+    void testRandomizedPagesProduceIdenticalChunks() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 300; round++) {
+            List<PdfTextExtractor.PageContent> pages = new ArrayList<>();
+            int pageCount = 1 + random.nextInt(4);
+            for (int p = 0; p < pageCount; p++) {
+                StringBuilder text = new StringBuilder();
+                if (random.nextInt(10) == 0) {
+                    text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                }
+                int words = random.nextInt(400);
+                for (int w = 0; w < words; w++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]);
+                    text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                }
+                pages.add(page(p + 1, text.toString()));
+            }
+
+            int chunkSize = 20 + random.nextInt(400);
+            int overlap = random.nextInt(chunkSize);
+            assertEquivalent(pages, chunkSize, overlap);
+        }
+    }
+
+    @Test
+    void testEdgeCasesProduceIdenticalChunks() {
+        assertEquivalent(List.of(page(1, "")), 50, 10);
+        assertEquivalent(List.of(page(1, ". . .")), 2, 1);
+        assertEquivalent(List.of(page(1, "One. "), page(2, " Two!\t\tThree?")), 5, 3);
+        assertEquivalent(List.of(page(1, "x".repeat(500) + ". " + "y".repeat(30))), 100, 150);
+    }
+
+    private void assertEquivalent(List<PdfTextExtractor.PageContent> pages, int chunkSize, int overlap) {
+        TextChunker chunker = new TextChunker(new TokenCounter("cl100k_base"));
+        ReflectionTestUtils.setField(chunker, "unit", "chars");
+        ReflectionTestUtils.setField(chunker, "chunkSize", chunkSize);
+        ReflectionTestUtils.setField(chunker, "overlapSize", overlap);
+
+        List<TextChunker.TextChunk> expected = new LegacyChunker(chunkSize, overlap).chunkText(pages);
+        List<TextChunker.TextChunk> actual = chunker.chunkText(pages);
+
+        assertEquals(expected, actual, () -> "Mismatch for size=" + chunkSize + ", overlap=" + overlap
+                + ", pages=" + pages);
+    }
+
+    private static PdfTextExtractor.PageContent page(int number, String text) {
+        return new PdfTextExtractor.PageContent(number, text);
+    }
+
+    /**
+     * Verbatim copy of the original implementation
+     */
+    private record LegacyChunker(int chunkSize, int overlapSize) {
+
+        List<TextChunker.TextChunk> chunkText(List<PdfTextExtractor.PageContent> pages) {
+            List<TextChunker.TextChunk> chunks = new ArrayList<>();
+            StringBuilder currentChunk = new StringBuilder();
+            int currentLength = 0;
+            int chunkIndex = 0;
+            Integer currentPageNumber = null;
+
+            for (PdfTextExtractor.PageContent page : pages) {
+                List<String> sentences = List.of(page.text().split("(?<=[.!?])\\s+"));
+
+                for (String sentence : sentences) {
+                    int sentenceLength = sentence.length();
+
+                    if (currentLength + sentenceLength > chunkSize && currentLength > 0) {
+                        String chunkText = currentChunk.toString().trim();
+
+                        if (!chunkText.isEmpty()) {
+                            chunks.add(chunk(chunkText, chunkIndex, currentPageNumber));
+                            chunkIndex++;
+                        }
+
+                        String overlapText = getOverlapText(currentChunk.toString());
+                        currentChunk = new StringBuilder(overlapText);
+                        currentLength = overlapText.length();
+                    }
+
+                    currentChunk.append(sentence).append(" ");
+                    currentLength += sentenceLength + 1;
+
+                    if (currentPageNumber == null) {
+                        currentPageNumber = page.pageNumber();
+                    }
+                }
+            }
+
+            if (currentLength > 0) {
+                String chunkText = currentChunk.toString().trim();
+                if (!chunkText.isEmpty()) {
+                    chunks.add(chunk(chunkText, chunkIndex, currentPageNumber));
+                }
+            }
+            return chunks;
+        }
+
+        private TextChunker.TextChunk chunk(String text, int chunkIndex, Integer pageNumber) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("pageNumber", pageNumber);
+            metadata.put("chunkIndex", chunkIndex);
+            return TextChunker.TextChunk.builder()
+                    .text(text)
+                    .chunkIndex(chunkIndex)
+                    .pageNumber(pageNumber)
+                    .metadata(metadata)
+                    .build();
+        }
+
+        private String getOverlapText(String text) {
+            if (text.length() <= overlapSize) {
+                return text;
+            }
+            String overlap = text.substring(Math.max(0, text.length() - overlapSize));
+            int firstSpace = overlap.indexOf(' ');
+            if (firstSpace > 0 && firstSpace < overlap.length() / 2) {
+                overlap = overlap.substring(firstSpace + 1);
+            }
+            return overlap;
+        }
+    }
+}
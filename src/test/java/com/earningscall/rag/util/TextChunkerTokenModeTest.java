@@ -0,0 +1,67 @@
+package com.earningscall.rag.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTokenModeTest {
+
+    private final TokenCounter tokenCounter = new TokenCounter("cl100k_base");
+
+    @Test
+    void testChunksAreBoundedInTokens() {
+        TextChunker chunker = chunker(120, 20);
+        String text = "Revenue for the quarter was $4.2 billion, up 12% year over year. "
+                + "Adjusted EBITDA margin expanded to 21.7% on lower input costs. ";
+
+        List<TextChunker.TextChunk> chunks = chunker.chunkText(
+                List.of(new PdfTextExtractor.PageContent(1, text.repeat(60))));
+
+        assertTrue(chunks.size() > 1);
+        for (TextChunker.TextChunk chunk : chunks) {
+            // Sentence-level counting can differ from whole-text BPE by a token per sentence boundary
+            assertTrue(tokenCounter.count(chunk.getText()) <= 130,
+                    () -> "Chunk exceeds token budget: " + tokenCounter.count(chunk.getText()));
+        }
+    }
+
+    @Test
+    void testOverlapIsMeasuredInTokens() {
+        TextChunker chunker = chunker(60, 15);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("In segment ").append(i).append(" we repurchased ").append(i * 7)
+                    .append(" thousand shares. ");
+        }
+
+        List<TextChunker.TextChunk> chunks = chunker.chunkText(
+                List.of(new PdfTextExtractor.PageContent(1, text.toString())));
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1).getText();
+            String current = chunks.get(i).getText();
+
+            int shared = 0;
+            for (int len = Math.min(previous.length(), current.length()); len > 0; len--) {
+                if (previous.endsWith(current.substring(0, len))) {
+                    shared = len;
+                    break;
+                }
+            }
+            assertTrue(shared > 0, "Consecutive chunks should overlap");
+            assertTrue(tokenCounter.count(current.substring(0, shared)) <= 15);
+        }
+    }
+
+    private TextChunker chunker(int size, int overlap) {
+        TextChunker chunker = new TextChunker(tokenCounter);
+        ReflectionTestUtils.setField(chunker, "unit", "tokens");
+        ReflectionTestUtils.setField(chunker, "chunkSize", size);
+        ReflectionTestUtils.setField(chunker, "overlapSize", overlap);
+        return chunker;
+    }
+}
@@ -0,0 +1,111 @@
+package com.earningscall.rag.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boxed List&lt;Double&gt; versus float[] versus int8 codes for one
+ * 1536-dimension embedding: the decode benchmarks show the heap cost per
+ * vector (gc.alloc.rate.norm with -prof gc), the dot benchmarks the cost of
+ * one similarity.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=VectorEncodingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorEncodingBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+
+    // Stand-in for the numbers parsed out of an embedding response
+    private double[] response;
+
+    private List<Double> boxedA;
+    private List<Double> boxedB;
+    private float[] floatA;
+    private float[] floatB;
+    private byte[] codesA;
+    private byte[] codesB;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        response = new double[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            response[d] = random.nextGaussian() * 0.03;
+        }
+
+        boxedA = decodeBoxed();
+        floatA = decodeFloat();
+        floatB = new float[DIMENSIONS];
+        boxedB = new ArrayList<>(DIMENSIONS);
+        for (int d = 0; d < DIMENSIONS; d++) {
+            floatB[d] = (float) (random.nextGaussian() * 0.03);
+            boxedB.add((double) floatB[d]);
+        }
+        codesA = new byte[DIMENSIONS];
+        codesB = new byte[DIMENSIONS];
+        HnswIndex.quantize(floatA, codesA);
+        HnswIndex.quantize(floatB, codesB);
+    }
+
+    @Benchmark
+    public List<Double> decodeBoxed() {
+        List<Double> vector = new ArrayList<>(DIMENSIONS);
+        for (double value : response) {
+            vector.add(value);
+        }
+        return vector;
+    }
+
+    @Benchmark
+    public float[] decodeFloat() {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = (float) response[d];
+        }
+        return vector;
+    }
+
+    @Benchmark
+    public byte[] decodeInt8() {
+        byte[] codes = new byte[DIMENSIONS];
+        HnswIndex.quantize(decodeFloat(), codes);
+        return codes;
+    }
+
+    @Benchmark
+    public double dotBoxed() {
+        double sum = 0.0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            sum += boxedA.get(d) * boxedB.get(d);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float dotFloat() {
+        return HnswIndex.dot(floatA, floatB);
+    }
+
+    @Benchmark
+    public int dotInt8() {
+        return HnswIndex.dot(codesA, codesB);
+    }
+}